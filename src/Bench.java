@@ -0,0 +1,176 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+
+/**
+ * Searches a built-in set of positions to a fixed depth with a fixed seed
+ * and a fresh transposition table for each. The total node count is a
+ * signature of the engine's search: it changes only when the search
+ * itself changes, never from one run or machine to the next. The time
+ * and nodes/sec compare the speed of engine builds.
+ */
+public class Bench {
+
+    public static final int DEFAULT_DEPTH = 8;
+    private static final long SEED = 20170101L;
+    private static final int HASH_MEGABYTES = 16;
+
+    // Positions in the genmoves format: move number and side on move, then the board
+    private static final String[] POSITIONS = new String[] {
+            "1 W\nkqbnr\nppppp\n.....\n.....\nPPPPP\nRNBQK",
+            "6 B\nk.bnr\n.p.p.\nQPp.p\n..P..\n...PP\nRNB.K",
+            "9 B\nk.bnr\npp.q.\n.Pp.p\nP...P\n.pPP.\n..RQK",
+            "11 W\n..bBr\nkp...\n..p.p\np....\n..PPP\nRNQ.K",
+            "11 B\nkb.nr\np..q.\n.Pp..\nP...p\nB.P.P\nRN..K",
+            "12 B\nkb.nr\n.pq..\n..p.p\np.pP.\nB.P.P\n.R.QK",
+            "13 W\nkbqnr\n.p...\n..p..\nP.p.p\n.B.PP\nRQ..K",
+            "16 B\nkb.nr\npp...\n.Pp.p\nP.PP.\n..Q..\nqN.BK"
+    };
+
+
+    /**
+     * @return the built-in bench positions.
+     */
+    public static State[] positions() throws IOException {
+
+        State[] states = new State[POSITIONS.length];
+        for(int i = 0; i < POSITIONS.length; ++i)
+            states[i] = State.read(new BufferedReader(new StringReader(POSITIONS[i])));
+        return states;
+    }
+
+
+    /**
+     * Runs the bench and prints nodes, time and speed per position and in total.
+     * @param depth The fixed search depth.
+     * @return The total number of nodes searched.
+     */
+    public static long run(int depth) throws IOException {
+        return run(depth, new Negamax(SEED, HASH_MEGABYTES));
+    }
+
+
+    /**
+     * Runs the bench with a search set up by the caller, for example with
+     * parts of the selective search switched off to compare them.
+     * @param depth The fixed search depth.
+     * @param negamax The search to run.
+     * @return The total number of nodes searched.
+     */
+    public static long run(int depth, Negamax negamax) throws IOException {
+
+        State[] states = positions();
+
+        long totalNodes = 0;
+        long totalNanos = 0;
+
+        for(int i = 0; i < states.length; ++i) {
+            negamax.reset();
+
+            long start = System.nanoTime();
+            int best = negamax.searchDepth(states[i], depth);
+            long elapsed = Math.max(1, System.nanoTime() - start);
+
+            long nodes = negamax.nodes();
+            totalNodes += nodes;
+            totalNanos += elapsed;
+
+            System.out.println(String.format("position %2d  best %s  nodes %,12d  time %,7d ms  %,11d nodes/sec",
+                    i + 1, Move.toString(best), nodes, elapsed / 1000000, nodes * 1000000000L / elapsed));
+        }
+
+        System.out.println("===========================");
+        System.out.println(String.format("Total time (ms) : %d", totalNanos / 1000000));
+        System.out.println(String.format("Nodes searched  : %d", totalNodes));
+        System.out.println(String.format("Nodes/second    : %d", totalNodes * 1000000000L / Math.max(1, totalNanos)));
+
+        return totalNodes;
+    }
+
+
+    /**
+     * Runs the bench positions with 1, 2, 4, 8 and 16 search threads and
+     * prints the time to reach the fixed depth, the nodes/sec of all
+     * threads together and the speedup over one thread. An unmeasured
+     * pass first warms up the JIT, so one thread is not timed on cold code.
+     * @param depth The fixed search depth.
+     * @param youngBrothersWait Use the Young Brothers Wait search instead of Lazy SMP.
+     */
+    public static void scaling(int depth, boolean youngBrothersWait) throws IOException {
+
+        State[] states = positions();
+        long baseNanos = 0;
+
+        Negamax warmup = new Negamax(SEED, HASH_MEGABYTES);
+        if(youngBrothersWait)
+            warmup.setSplitThreads(1);
+        for(State state : states) {
+            warmup.reset();
+            warmup.searchDepth(state, depth);
+        }
+        warmup.shutdown();
+
+        for(int threads = 1; threads <= 16; threads *= 2) {
+
+            Negamax negamax = new Negamax(SEED, HASH_MEGABYTES);
+            if(youngBrothersWait)
+                negamax.setSplitThreads(threads);
+            else
+                negamax.setThreads(threads);
+
+            long nodes = 0;
+            long nanos = 0;
+
+            for(State state : states) {
+                negamax.reset();
+                long start = System.nanoTime();
+                negamax.searchDepth(state, depth);
+                nanos += System.nanoTime() - start;
+                nodes += negamax.nodes();
+            }
+            negamax.shutdown();
+
+            if(threads == 1)
+                baseNanos = nanos;
+
+            System.out.println(String.format("threads %2d  time to depth %d %,8d ms  speedup %5.2f  %,12d nodes/sec",
+                    threads, depth, nanos / 1000000, (double) baseNanos / nanos, nodes * 1000000000L / Math.max(1, nanos)));
+        }
+    }
+
+
+    /**
+     * Usage: bench [depth] [nonull] [nolmr] [nofutility] [norazor] [notable]
+     */
+    public static void main(String[] args) throws IOException {
+
+        int depth = DEFAULT_DEPTH;
+        boolean nullMove = true;
+        boolean reductions = true;
+        boolean futility = true;
+        boolean razor = true;
+        boolean table = true;
+
+        for (String arg : args) {
+            if (arg.equals("nonull"))
+                nullMove = false;
+            else if (arg.equals("nolmr"))
+                reductions = false;
+            else if (arg.equals("nofutility"))
+                futility = false;
+            else if (arg.equals("norazor"))
+                razor = false;
+            else if (arg.equals("notable"))
+                table = false;
+            else
+                depth = Integer.parseInt(arg);
+        }
+
+        Negamax negamax = new Negamax(SEED, HASH_MEGABYTES);
+        negamax.setSelectivity(nullMove, reductions);
+        negamax.setPruning(futility, razor);
+        negamax.setTable(table);
+        run(depth, negamax);
+    }
+}
@@ -26,6 +26,9 @@ import java.net.Socket;
 public class Client {
     BufferedReader in;
     PrintStream out;
+    long myClock = -1;         // our time left in milliseconds from the last move prompt, -1 if unknown
+    long opponentClock = -1;   // the opponent's time left in milliseconds, -1 if unknown
+    char result = '?';         // 'W' or 'B' for the winner, '=' for a draw, '?' until the game is over
 
     /**
      * Enum of all commands that the IMCS supports.
@@ -262,8 +265,9 @@ public class Client {
 
     /**
      * Get a move string from the IMCS server. Blocks
-     * until move is received.
-     * @return  opponent move string
+     * until move is received. The move prompt, "? ours theirs",
+     * also carries the time left on both clocks.
+     * @return  opponent move string, or null once the game is over
      */
     public String getMove() throws IOException {
         String line;
@@ -279,10 +283,68 @@ public class Client {
             ch = line.charAt(0);
             if(ch == '!')
                 oppMove = line.substring(2);
-            else if(ch == '=')
+            else if(ch == '=') {
+                result = parseResult(line);
                 return null;
-            else if(ch == '?')
+            }
+            else if(ch == '?') {
+                String[] clocks = line.substring(1).trim().split("\\s+");
+                myClock = clocks.length > 0 ? parseClock(clocks[0]) : -1;
+                opponentClock = clocks.length > 1 ? parseClock(clocks[1]) : -1;
                 return oppMove;
+            }
+        }
+    }
+
+    /**
+     * @return our time left in milliseconds at the last move prompt, -1 if unknown.
+     */
+    public long getMyClock() {
+        return myClock;
+    }
+
+    /**
+     * @return the opponent's time left in milliseconds at the last move prompt, -1 if unknown.
+     */
+    public long getOpponentClock() {
+        return opponentClock;
+    }
+
+    /**
+     * @return 'W' or 'B' for the winner of the game, '=' for a draw, '?' if it is not over.
+     */
+    public char getResult() {
+        return result;
+    }
+
+    /**
+     * Read the result line that ends a game, like "= W wins" or "= draw".
+     * @param line  the line from the server, starting with '='
+     * @return  'W' or 'B' for the winner, '=' for a draw, '?' if the line says neither
+     */
+    static char parseResult(String line) {
+        String[] words = line.substring(1).trim().split("\\s+");
+        if (words[0].equals("W") || words[0].equals("B"))
+            return words[0].charAt(0);
+        if (line.contains("draw"))
+            return '=';
+        return '?';
+    }
+
+    /**
+     * Convert a clock like "4:59.123", "01:02:03.5" or "299.1" to milliseconds.
+     * @param clock  clock string from the move prompt
+     * @return  milliseconds, or -1 if the string is not a clock
+     */
+    static long parseClock(String clock) {
+        try {
+            double seconds = 0;
+            for (String part : clock.split(":"))
+                seconds = seconds * 60 + Double.parseDouble(part);
+            return (long) (seconds * 1000);
+        }
+        catch (NumberFormatException e) {
+            return -1;
         }
     }
 
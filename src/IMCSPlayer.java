@@ -203,8 +203,9 @@ public class IMCSPlayer {
                 try {
                     if(myMove.isEmpty())
                         c.getMove();
-                    myMove = n.online(null);
+                    myMove = n.online(null, c.getMyClock());
                     c.sendMove(myMove);
+                    n.ponder();            // think on the opponent's time
                     opponentMove = c.getMove();
                     if(opponentMove != null)
                         n.online(opponentMove);
@@ -223,8 +224,9 @@ public class IMCSPlayer {
                     else
                         finished = true;
                     if(!finished) {
-                        myMove = n.online(null);
+                        myMove = n.online(null, c.getMyClock());
                         c.sendMove(myMove);
+                        n.ponder();        // think on the opponent's time
                     }
                 }
                 catch (IOException e) {
@@ -232,5 +234,7 @@ public class IMCSPlayer {
                 }
             }
         }
+        n.stopPondering();
+        n.gameOver(c.getResult());
     }
 }
@@ -1,6 +1,56 @@
+import java.util.Arrays;
+
+
 public class Main {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+
+        // Count move generator nodes: perft depth [file.in] [-hash MB] [-threads N]
+        if(args.length > 0 && args[0].equals("perft")) {
+            Perft.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Fixed depth search signature and speed: bench [depth] [nonull] [nolmr] [nofutility] [norazor] [notable]
+        if(args.length > 0 && args[0].equals("bench")) {
+            Bench.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Parallel time to depth and nodes/sec at 1 to 16 threads: scaling [depth] [ybwc]
+        if(args.length > 0 && args[0].equals("scaling")) {
+            Bench.scaling(args.length > 1 ? Integer.parseInt(args[1]) : Bench.DEFAULT_DEPTH,
+                    args.length > 2 && args[2].equals("ybwc"));
+            return;
+        }
+
+        // Build the endgame tablebases: tablebase [pieces] [-dir directory] [-threads N]
+        if(args.length > 0 && args[0].equals("tablebase")) {
+            TablebaseGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Build the opening book: book [plies] [depth] [-threads N] [-file book]
+        if(args.length > 0 && args[0].equals("book")) {
+            OpeningBookBuilder.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Best moves of a position with their lines: analyze [file.in] [depth] [lines]
+        if(args.length > 0 && args[0].equals("analyze")) {
+            State s = args.length > 1 ? State.read(args[1]) : new State();
+            int depth = args.length > 2 ? Integer.parseInt(args[2]) : Bench.DEFAULT_DEPTH;
+            int lines = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+            for (RootMove line : new Negamax(System.nanoTime(), TTable.DEFAULT_MEGABYTES).analyze(s, lines, depth, 0))
+                System.out.println(line);
+            return;
+        }
+
+        // Time the State and Negamax hot paths: microbench [name...]
+        if(args.length > 0 && args[0].equals("microbench")) {
+            MicroBench.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
         // Play online
         IMCSPlayer p = new IMCSPlayer();
@@ -0,0 +1,227 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Microbenchmarks for the hot paths of State and Negamax, run the way JMH
+ * runs them: timed warmup iterations, then timed measurement iterations,
+ * with every result fed to a sink so the JIT cannot drop the work. Reports
+ * the mean time per operation with its spread, and the bytes allocated per
+ * operation as measured by the thread allocation counter. Every benchmark
+ * works over the same fixed positions from test/genmoves-tests.
+ */
+public class MicroBench {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1000000000L;    // one second per iteration
+
+    private static final int SEARCH_DEPTH = 4;                   // depth of the fixed depth search
+    private static final long SEED = 20170101L;                  // as in Bench, so searches repeat
+    private static final int HASH_MEGABYTES = 1;                 // small, since every search clears it
+
+    private static long sink;                                    // keeps results alive
+
+    /**
+     * One benchmark operation. Returns a value for the sink.
+     */
+    private interface Operation {
+        long run();
+    }
+
+
+    private final State[] positions;
+    private final int[][] moveLists;
+    private final int[] moveCounts;
+    private final int[] scratch = new int[State.MAX_MOVES];
+    private final MovePicker picker = new MovePicker();
+    private final Negamax negamax = new Negamax(SEED, HASH_MEGABYTES);
+
+
+    public MicroBench(State[] positions) {
+
+        this.positions = positions;
+        this.moveLists = new int[positions.length][State.MAX_MOVES];
+        this.moveCounts = new int[positions.length];
+        for(int i = 0; i < positions.length; ++i)
+            moveCounts[i] = positions[i].moveGen(moveLists[i]);
+    }
+
+
+    /**
+     * Loads every genmoves position in name order, so runs always use the same set.
+     */
+    public static State[] loadPositions(String folder) throws IOException {
+
+        File[] files = new File(folder).listFiles();
+        Arrays.sort(files);
+
+        List<State> states = new ArrayList<State>();
+        for(File file : files) {
+            if(file.getName().endsWith(".in"))
+                states.add(State.read(file.getPath()));
+        }
+        return states.toArray(new State[0]);
+    }
+
+
+    private long moveGen() {
+        long total = 0;
+        for(State s : positions)
+            total += s.moveGen(scratch);
+        return total;
+    }
+
+    private long makeUndo() {
+        long total = 0;
+        for(int i = 0; i < positions.length; ++i) {
+            State s = positions[i];
+            for(int j = 0; j < moveCounts[i]; ++j) {
+                s.movePiece(moveLists[i][j]);
+                total += s.hash;
+                s.undoMove(moveLists[i][j]);
+            }
+        }
+        return total;
+    }
+
+    private long evaluate() {
+        long total = 0;
+        for(State s : positions)
+            total += s.evaluate();
+        return total;
+    }
+
+    private long bestMoves() {
+        long total = 0;
+        for(int i = 0; i < positions.length; ++i) {
+            System.arraycopy(moveLists[i], 0, scratch, 0, moveCounts[i]);
+            positions[i].bestMoves(scratch, moveCounts[i]);
+            total += scratch[0];
+        }
+        return total;
+    }
+
+    private long movePicker() {
+        long total = 0;
+        for(State s : positions) {
+            picker.init(s, Move.NONE, Move.NONE, Move.NONE, null);
+            int move;
+            while((move = picker.next()) != Move.NONE)
+                total += move;
+        }
+        return total;
+    }
+
+    private long zobristHash() {
+        long total = 0;
+        for(int i = 0; i < positions.length; ++i) {
+            long hash = positions[i].hash;
+            for(int j = 0; j < moveCounts[i]; ++j)
+                total += ZobristTable.hash(moveLists[i][j], hash);
+        }
+        return total;
+    }
+
+    private long zobristHash2() {
+        long total = 0;
+        for(State s : positions)
+            total += ZobristTable.hash2(s);
+        return total;
+    }
+
+    private long search() {
+        long total = 0;
+        for(State s : positions) {
+            if(s.checkFinalState() == 'o' && s.moveGen(scratch) > 0) {
+                negamax.reset();     // every search starts from an empty table
+                total += negamax.searchDepth(s, SEARCH_DEPTH);
+            }
+        }
+        return total;
+    }
+
+
+    /**
+     * Runs one benchmark and prints a result line.
+     */
+    private static void measure(String name, Operation op) {
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for(int i = 0; i < WARMUP_ITERATIONS; ++i)
+            iteration(op);
+
+        double[] nanosPerOp = new double[MEASURE_ITERATIONS];
+        long ops = 0;
+        long allocated = threads.getThreadAllocatedBytes(thread);
+
+        for(int i = 0; i < MEASURE_ITERATIONS; ++i) {
+            long start = System.nanoTime();
+            long count = iteration(op);
+            nanosPerOp[i] = (double) (System.nanoTime() - start) / count;
+            ops += count;
+        }
+
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+        double mean = 0;
+        for(double n : nanosPerOp)
+            mean += n / MEASURE_ITERATIONS;
+        double variance = 0;
+        for(double n : nanosPerOp)
+            variance += (n - mean) * (n - mean) / MEASURE_ITERATIONS;
+
+        System.out.println(String.format("%-14s %14.1f ns/op  +- %8.1f  %12.1f B/op",
+                name, mean, Math.sqrt(variance), (double) allocated / ops));
+    }
+
+
+    /**
+     * Calls the operation until an iteration's worth of time has passed.
+     * @return The number of calls.
+     */
+    private static long iteration(Operation op) {
+
+        long end = System.nanoTime() + ITERATION_NANOS;
+        long count = 0;
+        do {
+            sink += op.run();
+            ++count;
+        } while(System.nanoTime() < end);
+        return count;
+    }
+
+
+    /**
+     * Usage: microbench [name...]
+     * Runs the named benchmarks, or all of them.
+     */
+    public static void main(String[] args) throws IOException {
+
+        MicroBench bench = new MicroBench(loadPositions("test/genmoves-tests"));
+        List<String> only = Arrays.asList(args);
+
+        String[] names = new String[] { "moveGen", "makeUndo", "evaluate", "bestMoves",
+                "movePicker", "zobristHash", "zobristHash2", "search" };
+        Operation[] ops = new Operation[] { bench::moveGen, bench::makeUndo, bench::evaluate, bench::bestMoves,
+                bench::movePicker, bench::zobristHash, bench::zobristHash2, bench::search };
+
+        System.out.println(String.format("%d positions, one op visits every position, search depth %d\n",
+                bench.positions.length, SEARCH_DEPTH));
+
+        for(int i = 0; i < names.length; ++i) {
+            if(only.isEmpty() || only.contains(names[i]))
+                measure(names[i], ops[i]);
+        }
+
+        if(sink == 42)
+            System.out.println();
+    }
+}
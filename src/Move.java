@@ -1,34 +1,78 @@
 public class Move {
 
-    public String move;
-    public int score;
-
-    public Piece fromPiece;
-    public Piece toPiece;
-
-    public int fromRank;
-    public int fromFile;
-    public int toRank;
-    public int toFile;
-
-    public Move(String move) {
-        this.move = move;
-        this.fromRank = getRow(move.charAt(1));
-        this.fromFile = getColumn(move.charAt(0));
-        this.toRank = getRow(move.charAt(4));
-        this.toFile = getColumn(move.charAt(3));
+    // A move is packed into a single int so that the search never allocates:
+    //   bits  0-4   from square (rank * 5 + file)
+    //   bits  5-9   to square
+    //   bits 10-13  moving piece code
+    //   bits 14-17  captured piece code, Piece.EMPTY for a quiet move
+    //   bit  18     pawn promotion flag
+    public static final int NONE = 0;    // no move (a6 to a6, from == to, can never be generated)
+
+    private static final int PROMOTION = 1 << 18;
+
+    // All board coordinates by square index
+    private static final String[] SQUARES = new String[] {
+            "a6", "b6", "c6", "d6", "e6",
+            "a5", "b5", "c5", "d5", "e5",
+            "a4", "b4", "c4", "d4", "e4",
+            "a3", "b3", "c3", "d3", "e3",
+            "a2", "b2", "c2", "d2", "e2",
+            "a1", "b1", "c1", "d1", "e1"
+    };
+
+
+    /**
+     * Packs a move into an int.
+     * @return the encoded move.
+     */
+    public static int encode(int from, int to, int piece, int captured, boolean promotion) {
+        return from | (to << 5) | (piece << 10) | (captured << 14) | (promotion ? PROMOTION : 0);
+    }
+
+    public static int from(int move) {
+        return move & 31;
+    }
+
+    public static int to(int move) {
+        return (move >>> 5) & 31;
+    }
+
+    public static int piece(int move) {
+        return (move >>> 10) & 15;
+    }
+
+    public static int captured(int move) {
+        return (move >>> 14) & 15;
+    }
+
+    public static boolean isCapture(int move) {
+        return captured(move) != Piece.EMPTY;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTION) != 0;
     }
 
-    public Move(String move, Piece fp, Piece tp) {
 
-        this.move = move;
-        this.fromPiece = fp;  // the piece that is moving on the board
-        this.toPiece = tp;    // the piece on the board in the next square
+    /**
+     * Builds the IMCS string form of a move, like "a2-a3".
+     * @param move The encoded move.
+     * @return The move string to send to the server.
+     */
+    public static String toString(int move) {
+        return SQUARES[from(move)] + "-" + SQUARES[to(move)];
+    }
 
-        this.fromRank = getRow(move.charAt(1));
-        this.fromFile = getColumn(move.charAt(0));
-        this.toRank = getRow(move.charAt(4));
-        this.toFile = getColumn(move.charAt(3));
+
+    /**
+     * Convert a move string like "a2-a3" to its from and to squares.
+     * @param move The move string.
+     * @return The from square and the to square.
+     */
+    public static int[] squares(String move) {
+        int from = getRow(move.charAt(1)) * 5 + getColumn(move.charAt(0));
+        int to = getRow(move.charAt(4)) * 5 + getColumn(move.charAt(3));
+        return new int[] { from, to };
     }
 
     /**
@@ -36,7 +80,7 @@ public class Move {
      * @param rank The rank in char format.
      * @return Index row on the board.
      */
-    private int getRow(char rank) {
+    private static int getRow(char rank) {
         switch(rank) {
             case '1':
                 return 5;
@@ -60,7 +104,7 @@ public class Move {
      * @param file The file in char format.
      * @return Index column on the board.
      */
-    private int getColumn(char file) {
+    private static int getColumn(char file) {
         switch(file) {
             case 'a':
                 return 0;
@@ -0,0 +1,226 @@
+/**
+ * Hands out the moves of one node in stages, best guesses first: the move
+ * stored in the transposition table, then captures and promotions by most
+ * valuable victim and least valuable attacker, then the killer moves of
+ * the ply, then the quiet moves by their history score, and last the
+ * captures that lose material by static exchange evaluation. A stage is only
+ * generated when the one before it runs out, so a node that fails high on
+ * the hash move or a capture never generates its quiet moves. Each search
+ * ply owns one picker, so picking never allocates.
+ */
+public class MovePicker {
+
+    // Stages, in the order they are tried
+    private static final int HASH = 0;
+    private static final int GEN_CAPTURES = 1;
+    private static final int CAPTURES = 2;
+    private static final int KILLER_1 = 3;
+    private static final int KILLER_2 = 4;
+    private static final int GEN_QUIETS = 5;
+    private static final int QUIETS = 6;
+    private static final int BAD_CAPTURES = 7;
+    private static final int DONE = 8;
+
+    private final int[] moves = new int[State.MAX_MOVES];
+    private final int[] scores = new int[State.MAX_MOVES];
+    private final int[] badCaptures = new int[State.MAX_MOVES];   // captures held back until the end
+
+    private State s;
+    private int stage;
+    private int count;             // moves generated for the current stage
+    private int index;             // next move of the current stage to hand out
+    private int badCount;
+
+    private int hashMove;
+    private int killer1;
+    private int killer2;
+    private int[][] history;       // quiet move scores by piece and destination, may be null
+    private boolean capturesOnly;  // stop after the good captures, for the quiescence search
+
+
+    /**
+     * Start picking the moves of a state.
+     * @param s The state. It must not change between calls to next, except
+     *          for moves that are made and undone again.
+     * @param hashMove The move from the transposition table, or Move.NONE.
+     * @param killer1 The newest killer move of this ply, or Move.NONE.
+     * @param killer2 The older killer move of this ply, or Move.NONE.
+     * @param history History scores by piece code and square, or null to
+     *                order the quiet moves by position alone.
+     */
+    public void init(State s, int hashMove, int killer1, int killer2, int[][] history) {
+        this.s = s;
+        this.stage = HASH;
+        this.count = 0;
+        this.index = 0;
+        this.badCount = 0;
+        this.hashMove = hashMove;
+        this.killer1 = killer1;
+        this.killer2 = killer2;
+        this.history = history;
+        this.capturesOnly = false;
+    }
+
+
+    /**
+     * Start picking only the captures and promotions of a state, best first.
+     * Captures that lose material are left out.
+     * @param s The state.
+     */
+    public void initCaptures(State s) {
+        init(s, Move.NONE, Move.NONE, Move.NONE, null);
+        this.stage = GEN_CAPTURES;
+        this.capturesOnly = true;
+    }
+
+
+    /**
+     * @return The next move to search, or Move.NONE when there are no more.
+     */
+    public int next() {
+
+        while (true) {
+            switch (stage) {
+
+                case HASH:
+                    ++stage;
+                    if (s.isPseudoLegal(hashMove))
+                        return hashMove;
+                    hashMove = Move.NONE;
+                    break;
+
+                case GEN_CAPTURES:
+                    count = s.genCaptures(moves);
+                    index = 0;
+                    for (int i = 0; i < count; ++i)
+                        scores[i] = captureScore(moves[i]);
+                    ++stage;
+                    break;
+
+                case CAPTURES:
+                    while (index < count) {
+                        int move = pickBest();
+                        if (move == hashMove)
+                            continue;
+                        if (!winsMaterial(move)) {
+                            if (!capturesOnly)
+                                badCaptures[badCount++] = move;
+                            continue;
+                        }
+                        return move;
+                    }
+                    stage = capturesOnly ? DONE : stage + 1;
+                    break;
+
+                case KILLER_1:
+                    ++stage;
+                    if (isKiller(killer1))
+                        return killer1;
+                    killer1 = Move.NONE;
+                    break;
+
+                case KILLER_2:
+                    ++stage;
+                    if (killer2 != killer1 && isKiller(killer2))
+                        return killer2;
+                    killer2 = Move.NONE;
+                    break;
+
+                case GEN_QUIETS:
+                    count = s.genQuiets(moves);
+                    index = 0;
+                    for (int i = 0; i < count; ++i)
+                        scores[i] = quietScore(moves[i]);
+                    ++stage;
+                    break;
+
+                case QUIETS:
+                    while (index < count) {
+                        int move = pickBest();
+                        if (move != hashMove && move != killer1 && move != killer2)
+                            return move;
+                    }
+                    index = 0;
+                    ++stage;
+                    break;
+
+                case BAD_CAPTURES:
+                    if (index < badCount)
+                        return badCaptures[index++];
+                    ++stage;
+                    break;
+
+                default:
+                    return Move.NONE;
+            }
+        }
+    }
+
+
+    /**
+     * A killer is only tried if it is a quiet move that can be played here
+     * and was not already tried as the hash move.
+     */
+    private boolean isKiller(int move) {
+        return move != Move.NONE && move != hashMove
+                && !Move.isCapture(move) && !Move.isPromotion(move)
+                && s.isPseudoLegal(move);
+    }
+
+
+    /**
+     * @return true unless the static exchange evaluation says the move loses material.
+     */
+    private boolean winsMaterial(int move) {
+
+        // taking a piece worth at least the attacker can never lose material
+        if (Move.isCapture(move) && State.MATERIAL[Piece.type(Move.captured(move))]
+                >= State.MATERIAL[Piece.type(Move.piece(move))])
+            return true;
+        return s.see(move) >= 0;
+    }
+
+
+    /**
+     * Most valuable victim, least valuable attacker. Promotions count the
+     * queen they gain as part of the victim.
+     */
+    private static int captureScore(int move) {
+        return State.materialGain(move) * 16 - State.MATERIAL[Piece.type(Move.piece(move))];
+    }
+
+
+    /**
+     * History first, with the positional gain to order moves the history knows nothing about.
+     */
+    private int quietScore(int move) {
+        int score = s.positionalGain(move);
+        if (history != null)
+            score += history[Move.piece(move)][Move.to(move)];
+        return score;
+    }
+
+
+    /**
+     * Selection sort one step at a time: swaps the best remaining move to
+     * the front of the rest and hands it out.
+     */
+    private int pickBest() {
+
+        int best = index;
+        for (int i = index + 1; i < count; ++i) {
+            if (scores[i] > scores[best])
+                best = i;
+        }
+
+        int move = moves[best];
+        int score = scores[best];
+        moves[best] = moves[index];
+        scores[best] = scores[index];
+        moves[index] = move;
+        scores[index] = score;
+
+        ++index;
+        return move;
+    }
+}
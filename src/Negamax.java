@@ -1,69 +1,314 @@
-import java.util.Collections;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
 
 public class Negamax {
 
+    private static final int MAX_PLY = 128;      // deeper than any game can last
+    private static final int MAX_DEPTH = 40;     // deepest iteration of a timed search
+
     private State s = new State();               // one state for do-undo moving
 
-    private long seed = System.nanoTime();       // seed for random numbers
-    private TTable ttable = new TTable();        // new transposition table object
+    private long seed;                           // seed for random numbers
+    private Random random;                       // shuffles moves without allocating
+    private TTable ttable;                       // shared transposition table
+    private long nodes;                          // nodes searched since the last reset
+
+    // Root moves, with the score and the subtree size of each from the last iteration
+    private int[] rootMoves = new int[State.MAX_MOVES];
+    private int[] rootScores = new int[State.MAX_MOVES];
+    private long[] rootNodes = new long[State.MAX_MOVES];
+    private int rootBest;                        // best root move of the current iteration
+    private int rootScore;                       // score of the last search's last completed iteration
+
+    // Aspiration windows: the first window is ASPIRATION_WINDOW either side of the
+    // last score, widened four times over on every fail until it passes MAX_WINDOW
+    private static final int ASPIRATION_DEPTH = 4;
+    private static final int ASPIRATION_WINDOW = 50;
+    private static final int MAX_WINDOW = 1000;
+
+    // Quiescence: a capture is skipped when even winning its victim plus this
+    // margin would leave the score below alpha
+    private static final int DELTA_MARGIN = 200;
+
+    // Selective search in Tnegamax, on by default, switched off for comparison in the bench
+    private boolean nullMovePruning = true;
+    private boolean lateMoveReductions = true;
+    private boolean[] nulled = new boolean[MAX_PLY];     // a null move was made at this ply
+    private static final int NULL_MOVE_DEPTH = 2;        // shallowest depth to try a null move
+    private static final int LMR_DEPTH = 3;              // shallowest depth to reduce late moves
+    private static final int LMR_MOVES = 3;              // moves searched at full depth before reducing
+
+    // Futility pruning and razoring at the last FRONTIER_DEPTH plies. The margins
+    // are per ply of depth left and can be tuned with -Dminichess.futilityMargin
+    // and -Dminichess.razorMargin.
+    private boolean futilityPruning = true;
+    private boolean razoring = true;
+    private static final int FRONTIER_DEPTH = 2;
+    private static final int FUTILITY_MARGIN = Integer.getInteger("minichess.futilityMargin", 150);
+    private static final int RAZOR_MARGIN = Integer.getInteger("minichess.razorMargin", 300);
+
+    // Move ordering: one staged picker for each ply of the search, two killer
+    // moves for each ply, and history scores of quiet moves by piece and square
+    private MovePicker[] pickers = new MovePicker[MAX_PLY];
+    private int[][] killers = new int[MAX_PLY][2];
+    private int[][] history = new int[12][30];
+    private static final int HISTORY_MAX = 1 << 20;     // halve every score once one grows past this
+
+    private TimeManager time = new TimeManager();    // how long this move may take, shared with helpers
+    private volatile boolean timeUp;             // the timer ran out, or the main thread stopped this helper
+    private static final int POLL_MASK = 1023;   // look at the clock once every 1024 nodes
+
+    // Pondering: while the opponent thinks, search the position after the reply we expect
+    private boolean pondering = Boolean.parseBoolean(System.getProperty("minichess.ponder", "true"));
+    private Thread ponderThread;                 // the ponder search, null when not pondering
+    private int ponderMove = Move.NONE;          // the reply the ponder search assumes
+    private int ponderPliesLeft;                 // plies left at the ponder search's root
+    private volatile int ponderBest;             // the ponder search's move once it has finished
+
+    // Lazy SMP: helper searches on their own states, sharing the transposition table
+    private int id;                              // 0 for the main search, 1.. for helpers
+    private Negamax[] helpers = new Negamax[0];
+    private Thread[] helperThreads = new Thread[0];
+
+    // Young Brothers Wait: splits the tree over a fork-join pool instead, null when not used
+    private SplitSearch split;
+    private SplitSearch.SplitPoint splitPoint;   // the split point a worker's sibling is below, null for none
+
+    private boolean useTable = true;             // search with the transposition table
+
+    // Endgame tablebases, probed instead of searching once few pieces are left, null for none
+    private Tablebase tablebase;
+    private long horizonCuts;                    // tablebase results cut off by the draw, see tablebaseScore
+
+    // A king capture scores WIN less the move number it is made at, see captureScore
+    static final int WIN = 100000;
+    static final int MIN_WIN = WIN - State.DRAW_MOVE;    // no king capture scores less
 
-    private long timer_end;                      // the time that a move should end
-    private int duration = 7900;                 // milliseconds per turn
+    private OpeningBook book;                    // moves played without searching, null for none
+
+    // Exact solver for the last plies before the move-40 draw
+    private Solver solver;                       // made by the first think() that needs it, null until then
+    private static final int SOLVER_PLIES = Integer.getInteger("minichess.solverPlies", 12);
 
     private int INFINITY = Integer.MAX_VALUE;    // max 32-bit integer closest to infinity
 
 
+    public Negamax() {
+        this(System.nanoTime(), TTable.DEFAULT_MEGABYTES);
+
+        try {
+            this.tablebase = Tablebase.load(Tablebase.DEFAULT_DIRECTORY);
+        }
+        catch (IOException e) {
+            System.out.println("Error loading tablebases\n" + e);
+        }
+
+        try {
+            this.book = OpeningBook.open(OpeningBook.DEFAULT_FILE);
+        }
+        catch (IOException e) {
+            System.out.println("Error loading the opening book\n" + e);
+        }
+
+        int threads = Integer.getInteger("minichess.threads", 1);
+        if ("ybwc".equals(System.getProperty("minichess.parallel")))
+            setSplitThreads(threads);
+        else
+            setThreads(threads);
+    }
+
+
     /**
-     * Play a local game cpu vs cpu. Can either choose to play using
-     * the standard negamax search of the Tnegamax search with the
-     * transposition table (not working yet).
+     * @param seed Seed for shuffling moves. A fixed seed makes fixed depth searches repeatable.
+     * @param hashMegabytes Size of the transposition table.
      */
-    public void play() {
+    public Negamax(long seed, int hashMegabytes) {
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.ttable = new TTable(hashMegabytes);
+        initPickers();
+    }
 
-        boolean finished = false;
 
-        do {
-            // Start the timer for current player's turn
-            this.timer_end = System.currentTimeMillis() + this.duration;
+    /**
+     * Helper search that shares the table of the main search.
+     */
+    private Negamax(Negamax main, int id) {
+        this.id = id;
+        this.seed = main.seed + id;       // every helper shuffles its moves differently
+        this.random = new Random(this.seed);
+        this.ttable = main.ttable;
+        this.useTable = main.useTable;
+        this.nullMovePruning = main.nullMovePruning;
+        this.lateMoveReductions = main.lateMoveReductions;
+        this.futilityPruning = main.futilityPruning;
+        this.razoring = main.razoring;
+        this.tablebase = main.tablebase;
+        initPickers();
+    }
 
-            s.printBoard();
 
-            List<Move> moves = s.moveGen();
-            Collections.shuffle(moves, new Random(seed));
-            List<Move> orderedMoves = s.bestMoves(moves);
-            Move best = orderedMoves.get(0);
+    private void initPickers() {
+        for (int i = 0; i < MAX_PLY; ++i)
+            pickers[i] = new MovePicker();
+    }
+
+
+    /**
+     * @return the number of tablebase results this search has cut off by the draw.
+     */
+    long horizonCuts() {
+        return horizonCuts;
+    }
+
 
-            // for each depth
-            for(int d = 6; d < 41; d+=2) {
+    /**
+     * @return a worker of the Young Brothers Wait search, sharing this search's table.
+     */
+    Negamax worker(int id) {
+        return new Negamax(this, id);
+    }
 
-                System.out.println(d);
 
-                int alpha = -INFINITY;
-                int beta = INFINITY;
-                Move depthBest = best;
+    /**
+     * Ready a worker of the Young Brothers Wait search to search a sibling
+     * below a split point, with the settings and the timer of the main search.
+     */
+    void startSibling(Negamax main, SplitSearch.SplitPoint point) {
+        this.time = main.time;
+        this.timeUp = false;
+        this.splitPoint = point;
+        this.nullMovePruning = main.nullMovePruning;
+        this.lateMoveReductions = main.lateMoveReductions;
+        this.futilityPruning = main.futilityPruning;
+        this.razoring = main.razoring;
+        this.tablebase = main.tablebase;
+    }
 
-                for(Move move: orderedMoves) {
 
-                    s.movePiece(move);
-                    int value = -negamax(s, d - 1, -beta, -alpha);
-                    s.undoMove(move);
+    /**
+     * Set the number of threads that search. Every thread after the first
+     * is a helper that searches the same root on its own copy of the state.
+     * Helpers fill the shared transposition table, and the main thread
+     * finds their results there. Only the main thread's move is played.
+     * @param threads The total number of search threads.
+     */
+    public void setThreads(int threads) {
 
-                    if (value > alpha) {
-                        depthBest = move;
-                        alpha = value;
-                    }
-                }
+        this.helpers = new Negamax[Math.max(0, threads - 1)];
+        for (int i = 0; i < helpers.length; ++i)
+            helpers[i] = new Negamax(this, i + 1);
+        this.helperThreads = new Thread[helpers.length];
+        shutdown();
+    }
 
-                // If we are out of time at this search depth
-                if(System.currentTimeMillis() > this.timer_end)
-                    break;
 
-                best = depthBest;
-            }
+    /**
+     * Search with the Young Brothers Wait parallel search instead of Lazy SMP.
+     * @param threads The number of threads in the fork-join pool.
+     */
+    public void setSplitThreads(int threads) {
+        setThreads(1);
+        this.split = new SplitSearch(threads, this);
+    }
+
+
+    /**
+     * Stop the threads of the Young Brothers Wait search, if there is one,
+     * and go back to searching on this thread alone.
+     */
+    public void shutdown() {
+        if (split != null)
+            split.shutdown();
+        this.split = null;
+    }
+
+
+    /**
+     * Switch the selective parts of the search on or off, for this search and its helpers.
+     * @param nullMove Prune with null moves.
+     * @param reductions Reduce the depth of late quiet moves.
+     */
+    public void setSelectivity(boolean nullMove, boolean reductions) {
+        this.nullMovePruning = nullMove;
+        this.lateMoveReductions = reductions;
+        for (Negamax helper : helpers) {
+            helper.nullMovePruning = nullMove;
+            helper.lateMoveReductions = reductions;
+        }
+    }
+
+
+    /**
+     * Search with or without the transposition table, in this search and its
+     * helpers. Without it, the plain alpha-beta search of negamax is used,
+     * which none of the selective search applies to.
+     * @param useTable Search with the table.
+     */
+    public void setTable(boolean useTable) {
+        this.useTable = useTable;
+        for (Negamax helper : helpers)
+            helper.useTable = useTable;
+    }
+
+
+    /**
+     * Play moves from an opening book while it has them.
+     * @param book The book, or null to search every move.
+     */
+    public void setBook(OpeningBook book) {
+        this.book = book;
+    }
+
+
+    /**
+     * Use endgame tablebases, in this search and its helpers.
+     * @param tablebase The tables, or null to search every endgame.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+        for (Negamax helper : helpers)
+            helper.tablebase = tablebase;
+    }
+
+
+    /**
+     * Switch the pruning near the leaves on or off, for this search and its helpers.
+     * @param futility Skip quiet moves at frontier nodes far below alpha.
+     * @param razor Drop into the quiescence search at frontier nodes far below alpha.
+     */
+    public void setPruning(boolean futility, boolean razor) {
+        this.futilityPruning = futility;
+        this.razoring = razor;
+        for (Negamax helper : helpers) {
+            helper.futilityPruning = futility;
+            helper.razoring = razor;
+        }
+    }
+
+
+    /**
+     * Play a local game cpu vs cpu. Can either choose to play using
+     * the standard negamax search of the Tnegamax search with the
+     * transposition table.
+     */
+    public void play() {
 
+        boolean finished = false;
+
+        do {
+            // Start the timer for current player's turn
+            time.startFixed(TimeManager.DEFAULT_MOVE_MILLIS);
+
+            s.printBoard();
+
+            int best = bookMove();
+            if(best == Move.NONE)
+                best = think();
             s.movePiece(best);
 
             // check if a player won
@@ -75,6 +320,7 @@ public class Negamax {
                     System.out.println("Black wins!");
                 else if(status == 'W')
                     System.out.println("White wins!");
+                gameOver(status);
                 finished = true;
             }
 
@@ -85,57 +331,663 @@ public class Negamax {
     /**
      * The IMCS player will use this method to simulate moves for the player
      * and opponent during online play. If the opponentMove is null, the best
-     * move will be decided for the main player within the time limit using a
-     * depth-6 negamax search.
+     * move will be decided for the main player within the time limit by
+     * iterative deepening.
      * @return The best move for the main player to send to the server and null
      * for returning from the opponent's move.
      */
     public String online(String opponentMove) {
+        return online(opponentMove, -1);
+    }
+
+
+    /**
+     * Same as online(opponentMove), with the time for our move taken from
+     * the game clock.
+     * @param clockMillis Our time left on the IMCS clock, or -1 if unknown.
+     */
+    public String online(String opponentMove, long clockMillis) {
 
         // Opponent's turn
         if(opponentMove != null){
-            Move oppMove = s.createMove(opponentMove);
-            s.movePiece(oppMove);
+            if(ponderThread != null) {
+                if(opponentMove.equals(Move.toString(ponderMove)))
+                    return null;           // ponder hit: keep searching, the move is already made
+                stopPondering();
+            }
+            s.movePiece(s.createMove(opponentMove));
             return null;
         }
 
+        // A book move needs no thinking
+        int bookMove = ponderThread == null ? bookMove() : Move.NONE;
+        if(bookMove != Move.NONE) {
+            s.movePiece(bookMove);
+            return Move.toString(bookMove);
+        }
+
+        // A ponder hit: the search of this position is already running, so
+        // give it the time of a normal move from now on and take its result
+        if(ponderThread != null) {
+            time.ponderHit(clockMillis, ponderPliesLeft);     // s belongs to the ponder thread
+            int best = joinPonder();
+            s.movePiece(best);
+            return Move.toString(best);
+        }
+
         // Start the timer for current player's turn
-        this.timer_end = System.currentTimeMillis() + this.duration;
+        if(clockMillis >= 0)
+            time.startClock(clockMillis, s.pliesLeft());
+        else
+            time.startFixed(TimeManager.DEFAULT_MOVE_MILLIS);
+
+        int best = think();
+        s.movePiece(best);
+
+        return Move.toString(best);
+    }
+
+
+    /**
+     * Find the move for the state on the board. In the last SOLVER_PLIES
+     * plies before the move-40 draw the solver tries to prove the result
+     * first.
+     * @return The best move.
+     */
+    private int think() {
+
+        if(s.pliesLeft() <= SOLVER_PLIES) {
+            if(solver == null)
+                solver = new Solver();     // only a playing search needs its tables
+            int move = solver.solve(s, time, tablebase);
+            if(move != Move.NONE)
+                return move;
+        }
+        return search(1, maxDepth(s));
+    }
+
+
+    /**
+     * @return the deepest iteration of a timed search: MAX_DEPTH, or the
+     * plies left before the draw when fewer, since every line ends there.
+     */
+    private static int maxDepth(State s) {
+        int pliesLeft = s.pliesLeft();
+        return pliesLeft > 0 ? Math.min(MAX_DEPTH, pliesLeft) : MAX_DEPTH;
+    }
+
+
+    /**
+     * Start pondering after our move has been sent: make the reply the
+     * search expects, from the transposition table or else the best by
+     * static score, and search the position after it in the background
+     * with no time limit until the opponent moves. Does nothing if pondering
+     * is switched off with -Dminichess.ponder=false or the game is over, or
+     * within SOLVER_PLIES of the draw, where think() runs the solver instead.
+     */
+    public void ponder() {
+
+        if(!pondering || ponderThread != null || s.checkFinalState() != 'o')
+            return;
+
+        long entry = ttable.lookup(s.hash);
+        int reply = entry != 0 ? TTableEntry.move(entry) : Move.NONE;
+        if(!s.isPseudoLegal(reply)) {
+            int[] moves = new int[State.MAX_MOVES];
+            int count = s.moveGen(moves);
+            if(count == 0)
+                return;
+            s.bestMoves(moves, count);
+            reply = moves[0];
+        }
+
+        // the book will have the answer to a reply in it, and the solver
+        // has to think about every move close to the draw
+        s.movePiece(reply);
+        if((book != null && book.probe(s) != Move.NONE) || s.pliesLeft() <= SOLVER_PLIES) {
+            s.undoMove(reply);
+            return;
+        }
+
+        this.ponderMove = reply;
+        this.ponderPliesLeft = s.pliesLeft();
+        time.startInfinite();
+        int maxDepth = maxDepth(s);
+        ponderThread = new Thread(() -> ponderBest = search(1, maxDepth), "ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+
+    /**
+     * @return the book move of the state on the board, or Move.NONE if the
+     * book has none. A move it returns is remembered for learning.
+     */
+    private int bookMove() {
+
+        int move = book != null ? book.probe(s) : Move.NONE;
+        if(move != Move.NONE)
+            book.played(s.hash, move, s.turn);
+        return move;
+    }
+
+
+    /**
+     * Learn from the result of a game that has ended, so the book moves of
+     * the winner are played more often and those of the loser less.
+     * @param winner 'W' or 'B' for the winner, '=' for a draw, or anything else if unknown.
+     */
+    public void gameOver(char winner) {
+        if(book != null)
+            book.learn(winner);
+    }
+
+
+    /**
+     * Abort the ponder search, if there is one, and take back the reply it
+     * assumed. Whatever it stored in the transposition table is kept.
+     */
+    public void stopPondering() {
+
+        if(ponderThread == null)
+            return;
+        time.stop();
+        joinPonder();
+        s.undoMove(ponderMove);
+    }
+
+
+    /**
+     * Wait for the ponder search to finish.
+     * @return Its best move.
+     */
+    private int joinPonder() {
+
+        try {
+            ponderThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ponderThread = null;
+        return ponderBest;
+    }
 
-        List<Move> moves = s.moveGen();                   // generate all moves
-        Collections.shuffle(moves, new Random(seed));     // shuffle moves
-        List<Move> orderedMoves = s.bestMoves(moves);     // order moves by best score
-        Move best = orderedMoves.get(0);
+
+    /**
+     * Search a copy of a state to a fixed depth with no time limit.
+     * Used for benchmarking. The state of the game being played is left as it was.
+     * @return The best move at that depth.
+     */
+    public int searchDepth(State state, int depth) {
+
+        State game = this.s;
+        this.s = new State(state);
+        time.startInfinite();
+
+        try {
+            return search(1, depth);
+        }
+        finally {
+            this.s = game;
+        }
+    }
+
+
+    /**
+     * Multi-PV analysis of a copy of a state. Every depth of the iterative
+     * deepening searches the root once for each line wanted, each time with
+     * the moves of the lines before left out, so the k-th search finds the
+     * k-th best move and its exact score. The searches share the
+     * transposition table, so after the first most of the tree is a lookup.
+     * Used to review games, to build the opening book, and to choose among
+     * moves that score almost the same.
+     * @param state The state to analyze.
+     * @param lines The number of root moves wanted.
+     * @param maxDepth The depth to search to.
+     * @param millis The time to stop at if maxDepth takes longer, or 0 for no limit.
+     * @return The best root moves, best first, from the deepest depth
+     * completed for every line, each with its score, depth, nodes and
+     * principal variation. Empty if there are no moves.
+     */
+    public List<RootMove> analyze(State state, int lines, int maxDepth, long millis) {
+
+        // the game being played goes on from where it was
+        State game = this.s;
+        this.s = new State(state);
+
+        try {
+            return analyzeLines(lines, maxDepth, millis);
+        }
+        finally {
+            this.s = game;
+        }
+    }
+
+
+    /**
+     * The multi-PV search of analyze, on the state in s.
+     */
+    private List<RootMove> analyzeLines(int lines, int maxDepth, long millis) {
+
+        if (millis > 0)
+            time.startFixed(millis);
+        else
+            time.startInfinite();
+        ttable.newSearch();
+        this.timeUp = false;
+        ageHistory();
+
+        int[] moves = rootMoves;
+        int count = s.moveGen(moves);
+        s.bestMoves(moves, count);
+        lines = Math.min(lines, count);
+        List<RootMove> analysis = new ArrayList<RootMove>();
+
+        for (int d = 1; d <= maxDepth && lines > 0; ++d) {
+
+            List<RootMove> found = new ArrayList<RootMove>();
+            long iterationNodes = this.nodes;
+
+            for (int k = 0; k < lines; ++k) {
+                long before = this.nodes;
+                int value = searchRoot(moves, k, count, d, -INFINITY, INFINITY);
+                if (stopped() || rootBest == Move.NONE)
+                    break;
+
+                // the line's move goes before the moves still to be searched
+                int i = k;
+                while (moves[i] != rootBest)
+                    ++i;
+                moves[i] = moves[k];
+                moves[k] = rootBest;
+
+                found.add(new RootMove(rootBest, value, d, this.nodes - before, principalVariation(rootBest, d)));
+            }
+
+            if (found.size() < lines)
+                break;
+            analysis = found;
+            this.rootScore = found.get(0).score;
+
+            time.iterationDone(this.nodes - iterationNodes);
+            if (!time.canStartIteration())
+                break;
+        }
+        return analysis;
+    }
+
+
+    /**
+     * Follow the best moves stored in the transposition table from a root move.
+     * @param move The root move.
+     * @param depth The most moves to follow.
+     * @return The moves of the line, the root move first.
+     */
+    private int[] principalVariation(int move, int depth) {
+
+        int[] pv = new int[depth];
+        int n = 0;
+        pv[n++] = move;
+        s.movePiece(move);
+
+        while (n < depth && s.checkFinalState() == 'o') {
+            long T = ttable.lookup(s.hash);
+            int next = T != 0 ? TTableEntry.move(T) : Move.NONE;
+            if (!s.isPseudoLegal(next))
+                break;
+            pv[n++] = next;
+            s.movePiece(next);
+        }
+
+        for (int i = n - 1; i >= 0; --i)
+            s.undoMove(pv[i]);
+        return Arrays.copyOf(pv, n);
+    }
+
+
+    /**
+     * @return the score of the best move of the last search, for the side
+     * on move, from its last completed iteration.
+     */
+    public int score() {
+        return rootScore;
+    }
+
+
+    /**
+     * Start a fresh repeatable search: empty table, reseeded shuffle,
+     * no killers or history and no nodes counted.
+     */
+    public void reset() {
+        this.ttable.clear();
+        resetOrdering();
+        for (Negamax helper : helpers)
+            helper.resetOrdering();
+        if (split != null)
+            split.reset();
+    }
+
+
+    /**
+     * Reseed the shuffle and forget the nodes, killers and history of this
+     * search alone, leaving the shared table as it is.
+     */
+    void resetOrdering() {
+        this.random.setSeed(this.seed);
+        this.nodes = 0;
+        clearOrdering();
+    }
+
+
+    private void clearOrdering() {
+        for (int[] k : killers)
+            Arrays.fill(k, Move.NONE);
+        for (int[] h : history)
+            Arrays.fill(h, 0);
+    }
+
+
+    /**
+     * Halves every history score, so the moves that were good in earlier
+     * searches still count but the current search soon outweighs them.
+     */
+    private void ageHistory() {
+        for (int[] h : history) {
+            for (int sq = 0; sq < h.length; ++sq)
+                h[sq] /= 2;
+        }
+    }
+
+
+    /**
+     * Remember a quiet move that caused a beta cutoff: it becomes the newest
+     * killer of its ply, and its history score grows with the depth searched.
+     */
+    private void cutoff(int move, int depth, int ply) {
+
+        if (Move.isCapture(move) || Move.isPromotion(move))
+            return;
+
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        int[] h = history[Move.piece(move)];
+        h[Move.to(move)] += depth * depth;
+        if (h[Move.to(move)] > HISTORY_MAX)
+            ageHistory();
+    }
+
+
+    /**
+     * @return The number of nodes searched by all threads since the last reset.
+     */
+    public long nodes() {
+        long total = this.nodes;
+        for (Negamax helper : helpers)
+            total += helper.nodes;
+        if (split != null)
+            total += split.nodes();
+        return total;
+    }
+
+
+    /**
+     * Start every helper on its own copy of the root state. Odd helpers
+     * start one ply deeper so the threads are spread over two depths.
+     */
+    private void startHelpers(int firstDepth, int maxDepth) {
+
+        for (int i = 0; i < helpers.length; ++i) {
+            final Negamax helper = helpers[i];
+            final int first = Math.min(firstDepth + helper.id % 2, maxDepth);
+            helper.s = new State(this.s);
+            helper.time = this.time;
+            helper.timeUp = false;
+            helperThreads[i] = new Thread(() -> helper.search(first, maxDepth), "helper-" + helper.id);
+            helperThreads[i].setDaemon(true);
+            helperThreads[i].start();
+        }
+    }
+
+
+    /**
+     * Stop every helper and wait for it to finish.
+     */
+    private void stopHelpers() {
+
+        for (Negamax helper : helpers)
+            helper.timeUp = true;
+
+        for (Thread thread : helperThreads) {
+            try {
+                if (thread != null)
+                    thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * Iterative deepening over the root moves until the timer runs out,
+     * one ply at a time. From ASPIRATION_DEPTH on, each iteration starts
+     * with a narrow window around the score of the one before, and widens
+     * it on the side that failed until the score falls inside. After every
+     * completed iteration the root moves are sorted by score, then by the
+     * size of their subtrees, so the next iteration tries the likeliest
+     * moves first.
+     * @param firstDepth The depth of the first iteration.
+     * @param maxDepth The depth of the last iteration.
+     * @return The best move found at the deepest completed depth.
+     */
+    private int search(int firstDepth, int maxDepth) {
+
+        // the Young Brothers Wait search runs in its pool, where nodes can split
+        if (split != null && !split.inPool())
+            return split.invoke(() -> search(firstDepth, maxDepth));
+
+        if (this.id == 0) {
+            ttable.newSearch();                           // age out entries from earlier moves
+            this.timeUp = false;
+            ageHistory();
+            startHelpers(firstDepth, maxDepth);
+        }
+
+        int[] moves = rootMoves;
+        int count = s.moveGen(moves);                     // generate all moves
+        shuffle(moves, count);                            // shuffle moves
+        s.bestMoves(moves, count);                        // order moves by best score
+        int best = moves[0];
+        int score = 0;                                    // score of the last completed iteration
+        long iterationNodes = this.nodes;
 
         // for each depth
-        for(int d = 6; d < 41; d+=2) {
+        for(int d = firstDepth; d <= maxDepth; ++d) {
 
-            int alpha = -INFINITY;
-            int beta = INFINITY;
-            Move depthBest = best;
+            int delta = ASPIRATION_WINDOW;
+            int alpha = d >= ASPIRATION_DEPTH ? window(score, -delta) : -INFINITY;
+            int beta = d >= ASPIRATION_DEPTH ? window(score, delta) : INFINITY;
+            int value;
+            int found = Move.NONE;                        // best move a finished search proved this iteration
 
-            for (Move move : orderedMoves) {
+            while (true) {
+                value = searchRoot(moves, 0, count, d, alpha, beta);
+                if (rootBest != Move.NONE)
+                    found = rootBest;
 
-                s.movePiece(move);
-                int value = -negamax(s, d - 1, -beta, -alpha);
-                s.undoMove(move);
+                if (stopped())
+                    break;
 
-                if (value > alpha) {
-                    depthBest = move;
-                    alpha = value;
-                }
+                // widen the side that failed, all the way once it gets too wide
+                delta *= 4;
+                if (value <= alpha && alpha > -INFINITY)
+                    alpha = delta > MAX_WINDOW ? -INFINITY : window(score, -delta);
+                else if (value >= beta && beta < INFINITY)
+                    beta = delta > MAX_WINDOW ? INFINITY : window(score, delta);
+                else
+                    break;
             }
 
-            // If we are out of time at this search depth
-            if (System.currentTimeMillis() > this.timer_end)
+            // If we are out of time at this search depth, keep a move only if
+            // a finished search proved it better than the last iteration's best
+            if (stopped()) {
+                if (found != Move.NONE)
+                    best = found;
                 break;
+            }
+
+            score = value;
+            if (found != Move.NONE)
+                best = found;
+            sortRoot(moves, count);
+            moveToFront(moves, count, best);             // search the best move first next time
 
-            best = depthBest;
+            // only start the next depth if it is predicted to finish in time
+            if (this.id == 0) {
+                time.iterationDone(this.nodes - iterationNodes);
+                iterationNodes = this.nodes;
+                if (!time.canStartIteration())
+                    break;
+            }
         }
 
-        s.movePiece(best);
+        if (this.id == 0)
+            stopHelpers();
+
+        this.rootScore = score;
+        return best;
+    }
+
+
+    /**
+     * @return true once the timer has run out, the main thread has stopped
+     * this helper, or a sibling has failed high at a split point above this worker.
+     */
+    boolean stopped() {
+        if (!this.timeUp && (time.expired() || (splitPoint != null && splitPoint.cancelled())))
+            this.timeUp = true;
+        return this.timeUp;
+    }
+
+
+    /**
+     * The clock check of every node. Only every 1024th node reads the clock.
+     * @return true once the search must stop.
+     */
+    private boolean outOfTime() {
+        if ((this.nodes & POLL_MASK) == 0)
+            return stopped();
+        return this.timeUp;
+    }
+
+
+    /**
+     * @return score + delta, kept inside -INFINITY..INFINITY.
+     */
+    private int window(int score, int delta) {
+        return (int) Math.max(-INFINITY, Math.min(INFINITY, (long) score + delta));
+    }
+
+
+    /**
+     * Searches every root move from the first index once with principal
+     * variation search: the first move gets the full window and the rest a
+     * null window, with a full re-search for any that beats alpha. Records
+     * the score and the subtree size of every move. The last move that
+     * raised alpha in a finished search goes in rootBest, or Move.NONE if
+     * none did.
+     * @param first The index of the first move to search, the moves before it are left out.
+     * @return The best score, or a bound on it if it is outside the window.
+     */
+    private int searchRoot(int[] moves, int first, int count, int depth, int alpha, int beta) {
+
+        int bestValue = -INFINITY;
+        this.rootBest = Move.NONE;
 
-        return best.move;
+        for (int i = first; i < count; ++i) {
+
+            long before = this.nodes;
+            s.movePiece(moves[i]);
+            int value;
+            if (i == first) {
+                value = -child(depth - 1, -beta, -alpha);
+            }
+            else {
+                value = -child(depth - 1, -alpha - 1, -alpha);
+                if (value > alpha && value < beta)
+                    value = -child(depth - 1, -beta, -alpha);
+            }
+            s.undoMove(moves[i]);
+
+            // a search cut short by the timer says nothing about its move
+            if (this.timeUp)
+                break;
+
+            rootScores[i] = value;
+            rootNodes[i] = this.nodes - before;
+
+            bestValue = Integer.max(bestValue, value);
+            if (value > alpha) {
+                alpha = value;
+                this.rootBest = moves[i];
+            }
+
+            if (alpha >= beta)
+                break;
+        }
+        return bestValue;
+    }
+
+
+    /**
+     * Searches the state after a root move with the search in use.
+     */
+    private int child(int depth, int alpha, int beta) {
+        return useTable ? Tnegamax(s, depth, 1, alpha, beta)
+                        : negamax(s, depth, 1, alpha, beta);
+    }
+
+
+    /**
+     * Insertion sort of the root moves by score, then by subtree size,
+     * both descending.
+     */
+    private void sortRoot(int[] moves, int count) {
+
+        for (int i = 1; i < count; ++i) {
+            int move = moves[i];
+            int score = rootScores[i];
+            long size = rootNodes[i];
+            int j = i - 1;
+            while (j >= 0 && (rootScores[j] < score || (rootScores[j] == score && rootNodes[j] < size))) {
+                moves[j + 1] = moves[j];
+                rootScores[j + 1] = rootScores[j];
+                rootNodes[j + 1] = rootNodes[j];
+                --j;
+            }
+            moves[j + 1] = move;
+            rootScores[j + 1] = score;
+            rootNodes[j + 1] = size;
+        }
+    }
+
+
+    /**
+     * Shuffles the first count moves in place.
+     */
+    private void shuffle(int[] moves, int count) {
+
+        for (int i = count - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int temp = moves[i];
+            moves[i] = moves[j];
+            moves[j] = temp;
+        }
     }
 
 
@@ -145,95 +997,396 @@ public class Negamax {
      * Stop searching when the timer is up.
      * @return The estimated score for a state.
      */
-    private int negamax(State s, int depth, int alpha, int beta) {
+    private int negamax(State s, int depth, int ply, int alpha, int beta) {
+
+        if(depth == 0)
+            return quiesce(s, ply, alpha, beta);
 
-        if(System.currentTimeMillis() > this.timer_end)
+        ++this.nodes;
+
+        if(outOfTime())
             return 0;
 
-        if((s.checkFinalState() != 'o') || (depth == 0))
-            return s.evaluate();
+        char status = s.checkFinalState();
+        if(status != 'o')
+            return status == '=' ? 0 : -captureScore(s, 0);     // material makes no difference to a draw
+
+        // taking the king wins, whatever else there is to search
+        if(s.canCaptureKing())
+            return captureScore(s, 1);
 
-        List<Move> moves = s.moveGen();
-        Collections.shuffle(moves, new Random(seed));
-        List<Move> orderedMoves = s.bestMoves(moves);
+        int entry = tablebase != null ? tablebase.probe(s) : Tablebase.NOT_FOUND;
+        if(entry != Tablebase.NOT_FOUND)
+            return tablebaseScore(entry, s);
+
+        MovePicker picker = pickers[ply];
+        picker.init(s, Move.NONE, killers[ply][0], killers[ply][1], history);
 
         int bestValue = -INFINITY;
+        int move;
+
+        int searched = 0;
 
-        for (Move move : orderedMoves) {
+        while ((move = picker.next()) != Move.NONE) {
             s.movePiece(move);
-            int value = -negamax(s, depth - 1, -beta, -alpha);
+            int value;
+            if (searched++ == 0) {
+                value = -negamax(s, depth - 1, ply + 1, -beta, -alpha);
+            }
+            else {
+                // null window search, and a full one if the move may be better
+                value = -negamax(s, depth - 1, ply + 1, -alpha - 1, -alpha);
+                if (value > alpha && value < beta)
+                    value = -negamax(s, depth - 1, ply + 1, -beta, -alpha);
+            }
             bestValue = Integer.max(bestValue, value);
             alpha = Integer.max(alpha, value);
             s.undoMove(move);     // put the piece back
 
-            if (alpha >= beta)
+            if (alpha >= beta) {
+                cutoff(move, depth, ply);
                 break;
+            }
         }
         return bestValue;
     }
 
 
 
-    // for testing zobrist hash values
-    // TODO delete me!!!!!
-    char[][] board2 = new char[][] {
-            { 'k', 'q', 'b', 'n', 'r'},
-            { 'p', 'p', '.', 'p', 'p'},
-            { '.', '.', 'p', '.', '.'},
-            { '.', '.', 'P', '.', '.'},
-            { 'P', 'P', '.', 'P', 'P'},
-            { 'R', 'N', 'B', 'Q', 'K'}
-    };
-
-
     /**
      * Compares the best scores of the opponent and the main players,
      * and uses alpha-beta pruning to prevent unnecessary searches.
      * Stop searching when the timer is up. Uses the transposition table
-     * for states that are already computed.
+     * for states that are already computed, and tries the best move
+     * stored for a state before any other, then the rest of the moves
+     * in the order of the staged move picker.
+     * Away from the principal variation, a node whose static score is
+     * already at beta first lets the opponent move twice in a row at
+     * reduced depth (null move pruning), and cuts off if that still fails
+     * high. Positions where the side on move has only pawns and a king are
+     * left out, since there passing can be better than every move.
+     * Quiet moves late in the move order are searched at reduced depth
+     * first, and again at full depth if they beat alpha.
+     * In the last two plies before the quiescence search, a node whose
+     * static score is far below alpha only searches captures (razoring),
+     * and one that is less far below skips its quiet moves (futility
+     * pruning). Neither happens when our king is attacked, and a node
+     * where the other king can be captured returns the win at once.
+     * In the Young Brothers Wait search, a node deep enough to split hands
+     * its moves after the first to SplitSearch, which searches them in
+     * parallel with this same search on its workers.
      * @return The estimated score for a state.
      */
-    private int Tnegamax(State s, int depth, int alpha, int beta) {
+    private int Tnegamax(State s, int depth, int ply, int alpha, int beta) {
+
+        if(depth == 0)
+            return quiesce(s, ply, alpha, beta);
 
-        if(System.currentTimeMillis() > this.timer_end)
+        ++this.nodes;
+
+        if(outOfTime())
             return 0;
 
-        if((s.checkFinalState() != 'o') || (depth == 0))
-            return s.evaluate();
+        char status = s.checkFinalState();
+        if(status != 'o')
+            return status == '=' ? 0 : -captureScore(s, 0);     // material makes no difference to a draw
 
-        /*boolean match = Arrays.deepEquals(s.board, board2);
+        // taking the king wins, without generating a move
+        if(s.canCaptureKing())
+            return captureScore(s, 1);
 
-        if(match) {
-            System.out.println(s.hash);
-            s.printBoard();
-        }*/
+        // an endgame in the tablebases needs no search
+        int entry = tablebase != null ? tablebase.probe(s) : Tablebase.NOT_FOUND;
+        if(entry != Tablebase.NOT_FOUND)
+            return tablebaseScore(entry, s);
+
+        int horizon = s.pliesLeft();
+        long T = ttable.lookup(s.hash);    // is the value of this state in the table?
+        int hashMove = T != 0 ? TTableEntry.move(T) : Move.NONE;
+
+        if(T != 0 && TTableEntry.usable(T, depth, horizon)) {
+            int value = TTableEntry.score(T);
+            int bound = TTableEntry.bound(T);
+            if(bound == TTableEntry.EXACT
+                    || (bound == TTableEntry.LOWER && value >= beta)
+                    || (bound == TTableEntry.UPPER && value <= alpha)) {
+                if(TTableEntry.horizonBound(T))
+                    ++this.horizonCuts;
+                return value;
+            }
+        }
+
+        // any cut below this node ties its entry to this horizon
+        long cuts = this.horizonCuts;
+
+        boolean pv = beta - alpha > 1;
+        int staticEval = s.evaluate();
+        boolean frontier = !pv && depth <= FRONTIER_DEPTH && !s.inCheck();
+
+        // razoring: so far below alpha that only winning material could help
+        if (razoring && frontier && hashMove == Move.NONE) {
+            int threshold = window(alpha, -RAZOR_MARGIN * depth);
+            if (staticEval < threshold) {
+                int value = quiesce(s, ply, threshold, threshold + 1);
+                if (this.timeUp)
+                    return 0;
+                if (value <= threshold)
+                    return value;
+            }
+        }
+
+        // null move, two plies less deep or three in deep searches
+        if (nullMovePruning && !pv && depth >= NULL_MOVE_DEPTH && !nulled[ply - 1]
+                && s.hasPieces() && staticEval >= beta) {
 
-        TTableEntry T = ttable.lookup(s.hash);    // is the value of this state in the table?
+            int reduction = depth > 6 ? 3 : 2;
+            s.makeNullMove();
+            nulled[ply] = true;
+            int value = -Tnegamax(s, Math.max(0, depth - 1 - reduction), ply + 1, -beta, -beta + 1);
+            nulled[ply] = false;
+            s.undoNullMove();
+
+            if (this.timeUp)
+                return 0;
+            if (value >= beta)
+                return value >= MIN_WIN ? beta : value;     // a win after passing is no proof
+        }
 
-        if((T != null) && ((T.alpha < T.value) || (T.value < T.beta)) && (T.depth >= depth))
-            return T.value;
+        int alphaOrig = alpha;
 
-        List<Move> moves = s.moveGen();
-        Collections.shuffle(moves, new Random(seed));
-        List<Move> orderedMoves = s.bestMoves(moves);
+        // futility: no quiet move is likely to lift the score to alpha
+        int futileValue = staticEval + FUTILITY_MARGIN * depth;
+        boolean futile = futilityPruning && frontier && futileValue <= alpha;
+
+        MovePicker picker = pickers[ply];
+        picker.init(s, hashMove, killers[ply][0], killers[ply][1], history);
 
         int bestValue = -INFINITY;
+        int bestMove = Move.NONE;
+        int move;
+
+        int searched = 0;
+
+        while ((move = picker.next()) != Move.NONE) {
+
+            if (futile && searched > 0 && !Move.isCapture(move) && !Move.isPromotion(move)) {
+                bestValue = Integer.max(bestValue, futileValue);
+                continue;
+            }
+
+            // once the eldest brother has set a bound, the younger ones are searched in parallel
+            if (searched > 0 && split != null && split.canSplit(depth)) {
+                int[] moves = new int[State.MAX_MOVES];
+                int[] reductions = new int[State.MAX_MOVES];
+                int count = 0;
+                do {
+                    if (futile && !Move.isCapture(move) && !Move.isPromotion(move)) {
+                        bestValue = Integer.max(bestValue, futileValue);
+                        continue;
+                    }
+                    moves[count] = move;
+                    reductions[count++] = reduction(move, depth, ply, ++searched);
+                } while ((move = picker.next()) != Move.NONE);
+
+                SplitSearch.SplitPoint point = split.search(s, moves, reductions, count,
+                        depth, ply, alpha, beta, splitPoint);
+                if (stopped())
+                    return 0;
+                if (point.horizonBound())
+                    ++this.horizonCuts;
+                if (point.bestValue() > bestValue) {
+                    bestValue = point.bestValue();
+                    bestMove = point.bestMove();
+                    if (bestValue >= beta)
+                        cutoff(bestMove, depth, ply);
+                }
+                break;
+            }
 
-        for (Move move : orderedMoves) {
             s.movePiece(move);
-            int value = -Tnegamax(s, depth - 1, -beta, -alpha);
-            bestValue = Integer.max(bestValue, value);
+            int value;
+            if (searched++ == 0)
+                value = -Tnegamax(s, depth - 1, ply + 1, -beta, -alpha);
+            else
+                value = searchLate(s, depth, ply, alpha, beta, reduction(move, depth, ply, searched));
+            s.undoMove(move);     // put the piece back
+
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = move;
+            }
             alpha = Integer.max(alpha, value);
+
+            if (alpha >= beta) {
+                cutoff(move, depth, ply);
+                break;
+            }
+        }
+
+        // a search cut short by the timer has no trustworthy value
+        if(this.timeUp)
+            return 0;
+
+        // store ttable entry, with the bound type taken from the original window
+        int bound = bestValue <= alphaOrig ? TTableEntry.UPPER
+                  : bestValue >= beta ? TTableEntry.LOWER : TTableEntry.EXACT;
+        ttable.store(s.hash, bestMove, bestValue, depth, bound, horizon, this.horizonCuts != cuts);
+
+        return bestValue;
+    }
+
+
+    /**
+     * @param searched The moves of the node searched so far, this one included.
+     * @return how many plies less deep a move is searched first: late quiet
+     * moves that are not killers are reduced, the rest are not.
+     */
+    private int reduction(int move, int depth, int ply, int searched) {
+
+        if (lateMoveReductions && depth >= LMR_DEPTH && searched > LMR_MOVES
+                && !Move.isCapture(move) && !Move.isPromotion(move)
+                && move != killers[ply][0] && move != killers[ply][1])
+            return depth >= 6 && searched > 2 * LMR_MOVES ? 2 : 1;
+        return 0;
+    }
+
+
+    /**
+     * Searches a move after the first of a node, on the state after the
+     * move: with a null window, less deep first if it is reduced, then at
+     * full depth if it beats alpha, and with the full window only if the
+     * move may be better. Also used by the siblings of a split point.
+     * @param depth The depth of the node the move is made at.
+     * @param ply The ply of the node the move is made at.
+     * @return The score of the move, for the side that makes it.
+     */
+    int searchLate(State s, int depth, int ply, int alpha, int beta, int reduction) {
+
+        int value = -Tnegamax(s, depth - 1 - reduction, ply + 1, -alpha - 1, -alpha);
+        if (reduction > 0 && value > alpha)
+            value = -Tnegamax(s, depth - 1, ply + 1, -alpha - 1, -alpha);
+        if (value > alpha && value < beta)
+            value = -Tnegamax(s, depth - 1, ply + 1, -beta, -alpha);
+        return value;
+    }
+
+
+    /**
+     * The score of a king capture for the side that makes it: WIN less the
+     * move number after the capture. A faster capture scores more, and a
+     * slower loss less badly. Since the score counts from the start of the
+     * game rather than from the root, it means the same at any ply, and the
+     * transposition table can store it as it is. It only holds at the move
+     * number it was found at, so TTableEntry.usable reuses it only at the
+     * same plies left.
+     * @param s The state.
+     * @param plies The plies from the state until the king has been captured.
+     * @return The score of the capture, at least MIN_WIN.
+     */
+    static int captureScore(State s, int plies) {
+        return WIN - (State.DRAW_MOVE - s.pliesLeft() + plies);
+    }
+
+
+    /**
+     * The score of a tablebase entry. A win or loss that takes more plies
+     * than are left before the move-40 draw is a draw. That draw holds only
+     * at this horizon, however shallow the search that found it, so it is
+     * counted in horizonCuts and the table entries above it keep their
+     * horizon.
+     * @param entry The entry, not Tablebase.NOT_FOUND.
+     * @param s The state the entry is for.
+     * @return The score for the side on move.
+     */
+    private int tablebaseScore(int entry, State s) {
+
+        if(entry == Tablebase.DRAW)
+            return 0;
+        int distance = Tablebase.distance(entry);
+        if(distance > s.pliesLeft()) {
+            ++this.horizonCuts;
+            return 0;
+        }
+        return Tablebase.isWin(entry) ? captureScore(s, distance) : -captureScore(s, distance);
+    }
+
+
+    /**
+     * Searches only captures and promotions past the depth limit, so that
+     * a leaf is never scored in the middle of an exchange. The side on move
+     * can stand pat on the static evaluation instead of capturing, and a
+     * capture that could not lift the score to alpha even with its victim
+     * won and DELTA_MARGIN to spare is not searched (delta pruning). A side
+     * whose king is attacked cannot stand pat, since its king would be
+     * taken, so it searches every move with no delta pruning.
+     * @return The estimated score for a state.
+     */
+    private int quiesce(State s, int ply, int alpha, int beta) {
+
+        ++this.nodes;
+
+        if(outOfTime())
+            return 0;
+
+        char status = s.checkFinalState();
+        if(status != 'o')
+            return status == '=' ? 0 : -captureScore(s, 0);
+        if(s.canCaptureKing())
+            return captureScore(s, 1);
+        int standPat = s.evaluate();
+        if(ply >= MAX_PLY - 1)
+            return standPat;
+
+        // with our king attacked, standing pat would leave it to be taken
+        boolean inCheck = s.inCheck();
+        if(!inCheck && standPat >= beta)
+            return standPat;
+
+        int bestValue = inCheck ? -INFINITY : standPat;
+        if(!inCheck)
+            alpha = Integer.max(alpha, standPat);
+
+        MovePicker picker = pickers[ply];
+        if(inCheck)
+            picker.init(s, Move.NONE, killers[ply][0], killers[ply][1], history);
+        else
+            picker.initCaptures(s);
+        int move;
+
+        while ((move = picker.next()) != Move.NONE) {
+
+            if (!inCheck && standPat + State.materialGain(move) + DELTA_MARGIN <= alpha)
+                continue;
+
+            s.movePiece(move);
+            int value = -quiesce(s, ply + 1, -beta, -alpha);
             s.undoMove(move);     // put the piece back
 
+            bestValue = Integer.max(bestValue, value);
+            alpha = Integer.max(alpha, value);
+
             if (alpha >= beta)
                 break;
         }
+        return bestValue;
+    }
 
-        // store ttable entry
-        T = new TTableEntry(s.hash, depth, alpha, beta, bestValue);
-        ttable.store(T);
 
-        return bestValue;
+    /**
+     * Moves a move to the front of the list and shifts the ones before it back.
+     * Does nothing if the move is not in the list.
+     */
+    private static void moveToFront(int[] moves, int count, int move) {
+
+        if(move == Move.NONE)
+            return;
+
+        for (int i = 0; i < count; ++i) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
+        }
     }
 }
@@ -0,0 +1,180 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * An opening book built by OpeningBookBuilder: a file of 20-byte entries,
+ * the Zobrist hash of a position, a move, its score from a deep search and
+ * a weight, sorted by hash. The file is memory-mapped and looked up by
+ * binary search, so a book move costs no thinking time. Of the moves of a
+ * position, the one with the highest weight is played, the best score
+ * breaking ties, and a move whose weight has dropped to 0 is not played.
+ * The book learns: the moves it gave in a game gain weight when the game
+ * is won and lose weight when it is lost, written back to the file.
+ */
+public class OpeningBook {
+
+    public static final String DEFAULT_FILE = System.getProperty("minichess.book", "opening.book");
+
+    static final int ENTRY_BYTES = 20;         // hash, move, score, weight
+    static final int MAX_WEIGHT = 1000;
+    private static final int LEARN_STEP = 10;  // weight won or lost by a move for each game
+
+    private final ByteBuffer entries;
+    private final int count;
+    private final boolean writable;
+
+    // Book moves played in the current game, with the color that played them
+    private final List<long[]> played = new ArrayList<long[]>();
+
+
+    private OpeningBook(ByteBuffer entries, boolean writable) {
+        this.entries = entries;
+        this.count = entries.capacity() / ENTRY_BYTES;
+        this.writable = writable;
+    }
+
+
+    /**
+     * Map a book file into memory, writable if the file is so the book can learn.
+     * @param file The path of the book.
+     * @return The book, or null if there is no such file.
+     */
+    public static OpeningBook open(String file) throws IOException {
+
+        if (!new File(file).isFile())
+            return null;
+
+        boolean writable = true;
+        RandomAccessFile raf;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+        }
+        catch (FileNotFoundException e) {
+            raf = new RandomAccessFile(file, "r");     // a read-only book does not learn
+            writable = false;
+        }
+
+        try (FileChannel channel = raf.getChannel()) {
+            if (channel.size() % ENTRY_BYTES != 0)
+                throw new IllegalStateException(file + " is not a book: " + channel.size() + " bytes");
+            return new OpeningBook(channel.map(writable ? FileChannel.MapMode.READ_WRITE
+                                                        : FileChannel.MapMode.READ_ONLY, 0, channel.size()), writable);
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+
+    /**
+     * @return the number of entries.
+     */
+    public int size() {
+        return count;
+    }
+
+
+    /**
+     * Look up the book move of a state.
+     * @param s The state.
+     * @return The move with the highest weight, or Move.NONE if the book has
+     * no move for the state that can be played in it.
+     */
+    public int probe(State s) {
+
+        int best = Move.NONE;
+        int bestWeight = 0;
+        int bestScore = 0;
+
+        for (int i = first(s.hash); i < count && hash(i) == s.hash; ++i) {
+            int move = move(i);
+            int weight = weight(i);
+            int score = score(i);
+            if (weight > 0 && (weight > bestWeight || (weight == bestWeight && score > bestScore))
+                    && s.isPseudoLegal(move)) {
+                best = move;
+                bestWeight = weight;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * Remember that a book move was played, to learn from the game's result.
+     * @param hash The hash of the state the move was played in.
+     * @param move The move.
+     * @param turn The player who played it, 'W' or 'B'.
+     */
+    public void played(long hash, int move, char turn) {
+        played.add(new long[] { hash, move, turn });
+    }
+
+
+    /**
+     * Learn from a finished game: every book move it played gains weight
+     * if its player won and loses weight if its player lost. A draw changes
+     * nothing. The weights are written back to the book file.
+     * @param winner 'W' or 'B' for the winner, '=' for a draw, anything else if unknown.
+     */
+    public void learn(char winner) {
+
+        if (writable && (winner == 'W' || winner == 'B')) {
+            for (long[] entry : played) {
+                int step = entry[2] == winner ? LEARN_STEP : -LEARN_STEP;
+                for (int i = first(entry[0]); i < count && hash(i) == entry[0]; ++i) {
+                    if (move(i) == (int) entry[1])
+                        entries.putInt(i * ENTRY_BYTES + 16, Math.max(0, Math.min(MAX_WEIGHT, weight(i) + step)));
+                }
+            }
+            if (entries instanceof MappedByteBuffer)
+                ((MappedByteBuffer) entries).force();
+        }
+        played.clear();
+    }
+
+
+    /**
+     * Binary search for the first entry of a hash.
+     * @return The index of the first entry with a hash not below it.
+     */
+    private int first(long hash) {
+
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hash(mid) < hash)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+
+    private long hash(int i) {
+        return entries.getLong(i * ENTRY_BYTES);
+    }
+
+    private int move(int i) {
+        return entries.getInt(i * ENTRY_BYTES + 8);
+    }
+
+    private int score(int i) {
+        return entries.getInt(i * ENTRY_BYTES + 12);
+    }
+
+    private int weight(int i) {
+        return entries.getInt(i * ENTRY_BYTES + 16);
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Builds the opening book. Every position in the first plies of the game
+ * is searched to a fixed depth, in parallel with one search for each
+ * thread. Each move of a position is scored by the search of the position
+ * it leads to, so the moves of all but the last ply are scored one ply
+ * deeper than the search depth. The moves within BOOK_MARGIN of the best
+ * go in the book, weighted by how close they come to it. In the last ply
+ * the moves come from a multi-PV analysis of BOOK_LINES lines instead,
+ * and the ones within BOOK_MARGIN go in the same way.
+ */
+public class OpeningBookBuilder {
+
+    public static final int DEFAULT_PLIES = 4;
+    public static final int DEFAULT_DEPTH = 8;
+    private static final int BOOK_MARGIN = 50;      // moves this much worse than the best stay out
+    private static final int BOOK_LINES = 3;        // root moves analyzed in the last ply
+    private static final int HASH_MEGABYTES = 16;   // table of each thread's search
+
+
+    /**
+     * Build a book and write it to a file.
+     * @param plies The number of plies from the start the book covers.
+     * @param depth The depth every position is searched to.
+     * @param threads The number of searches that run at once.
+     * @param file The path of the book to write.
+     * @return The number of entries written.
+     */
+    public static int build(int plies, int depth, int threads, String file) throws IOException {
+
+        // every position up to the last ply, once however it is reached
+        Map<Long, State> positions = new LinkedHashMap<Long, State>();
+        List<State> ply = new ArrayList<State>();
+        ply.add(new State());
+        positions.put(ply.get(0).hash, ply.get(0));
+        int[] moves = new int[State.MAX_MOVES];
+
+        for (int p = 0; p < plies; ++p) {
+            List<State> next = new ArrayList<State>();
+            for (State s : ply) {
+                if (s.checkFinalState() != 'o')
+                    continue;
+                int count = s.moveGen(moves);
+                for (int i = 0; i < count; ++i) {
+                    State child = new State(s);
+                    child.movePiece(moves[i]);
+                    if (positions.putIfAbsent(child.hash, child) == null)
+                        next.add(child);
+                }
+            }
+            ply = next;
+        }
+        Set<Long> leaves = new HashSet<Long>();
+        for (State s : ply)
+            leaves.add(s.hash);
+
+        // search them all, each thread with a search of its own
+        Map<Long, List<RootMove>> results = search(new ArrayList<State>(positions.values()), leaves, depth, threads);
+
+        List<long[]> entries = new ArrayList<long[]>();
+        for (State s : positions.values()) {
+            if (s.checkFinalState() != 'o')
+                continue;
+
+            int count;
+            int[] scores;
+            if (leaves.contains(s.hash)) {
+                List<RootMove> lines = results.get(s.hash);
+                count = lines.size();
+                scores = new int[count];
+                for (int i = 0; i < count; ++i) {
+                    moves[i] = lines.get(i).move;
+                    scores[i] = lines.get(i).score;
+                }
+            }
+            else {
+                count = s.moveGen(moves);
+                scores = new int[count];
+                for (int i = 0; i < count; ++i) {
+                    s.movePiece(moves[i]);
+                    char status = s.checkFinalState();
+                    scores[i] = status == 'o' ? -results.get(s.hash).get(0).score
+                              : status == '=' ? 0 : Negamax.captureScore(s, 0);
+                    s.undoMove(moves[i]);
+                }
+            }
+
+            int best = -Integer.MAX_VALUE;
+            for (int i = 0; i < count; ++i)
+                best = Math.max(best, scores[i]);
+            for (int i = 0; i < count; ++i) {
+                if (scores[i] >= best - BOOK_MARGIN)
+                    entries.add(new long[] { s.hash, moves[i], scores[i],
+                            OpeningBook.MAX_WEIGHT / 10 - (best - scores[i]) });
+            }
+        }
+
+        entries.sort((a, b) -> Long.compare(a[0], b[0]));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+                out.writeInt((int) entry[3]);
+            }
+        }
+        return entries.size();
+    }
+
+
+    /**
+     * Search every state to a fixed depth on a pool of threads, the leaves
+     * for BOOK_LINES moves and the rest for their best move only.
+     * @return The analysis of each state by its hash.
+     */
+    private static Map<Long, List<RootMove>> search(List<State> states, Set<Long> leaves, int depth, int threads) {
+
+        Map<Long, List<RootMove>> results = new HashMap<Long, List<RootMove>>();
+        ThreadLocal<Negamax> searches = ThreadLocal.withInitial(() -> new Negamax(System.nanoTime(), HASH_MEGABYTES));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        try {
+            pool.submit(() -> states.parallelStream().forEach(s -> {
+                if (s.checkFinalState() != 'o')
+                    return;
+                int lines = leaves.contains(s.hash) ? BOOK_LINES : 1;
+                List<RootMove> result = searches.get().analyze(s, lines, depth, 0);
+                synchronized (results) {
+                    results.put(s.hash, result);
+                }
+            })).join();
+        }
+        finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+
+    /**
+     * Build the book from the command line.
+     * Usage: book [plies] [depth] [-threads N] [-file book]
+     */
+    public static void main(String[] args) throws IOException {
+
+        int plies = DEFAULT_PLIES;
+        int depth = DEFAULT_DEPTH;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String file = OpeningBook.DEFAULT_FILE;
+        int numbers = 0;
+
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("-threads"))
+                threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-file"))
+                file = args[++i];
+            else if (numbers++ == 0)
+                plies = Integer.parseInt(args[i]);
+            else
+                depth = Integer.parseInt(args[i]);
+        }
+
+        long start = System.nanoTime();
+        int entries = build(plies, depth, threads, file);
+        System.out.println(String.format("%d entries for %d plies at depth %d in %,d ms",
+                entries, plies, depth, (System.nanoTime() - start) / 1000000));
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Counts the leaf nodes of the game tree to a fixed depth. The counts prove
+ * that moveGen, movePiece and undoMove agree with each other, and the time
+ * they take measures the raw speed of the move generator. A state where the
+ * game is over counts as a single leaf.
+ */
+public class Perft {
+
+    // Optional cache of subtree counts. Each entry is two longs, the key XOR
+    // the count and the count, so the root split threads can share it.
+    private final long[] cache;
+    private final int cacheMask;
+
+    private static final long DEPTH_KEY = 0x9E3779B97F4A7C15L;
+    private static final long HORIZON_KEY = 0xC2B2AE3D27D4EB4FL;
+
+
+    /**
+     * @param hashMegabytes Size of the subtree count cache, 0 for none.
+     */
+    public Perft(int hashMegabytes) {
+
+        if(hashMegabytes > 0) {
+            int entries = Integer.highestOneBit((int) Math.min((long) hashMegabytes * 1024 * 1024 / 16, 1 << 28));
+            this.cache = new long[entries * 2];
+            this.cacheMask = entries - 1;
+        }
+        else {
+            this.cache = null;
+            this.cacheMask = 0;
+        }
+    }
+
+
+    /**
+     * Count the leaf nodes below a state on this thread.
+     * @param s The state to count from. It is left as it was.
+     * @param depth The number of plies to search.
+     * @return The number of leaf nodes.
+     */
+    public long perft(State s, int depth) {
+        return count(s, depth, new int[depth + 1][State.MAX_MOVES]);
+    }
+
+
+    /**
+     * Count the leaf nodes below a state, splitting the root moves
+     * over a fork-join pool. Every root move gets its own copy of the state.
+     * @return The number of leaf nodes.
+     */
+    public long parallel(State s, int depth, int threads) {
+
+        if(depth < 2 || s.checkFinalState() != 'o')
+            return perft(s, depth);
+
+        int[] moves = new int[State.MAX_MOVES];
+        int count = s.moveGen(moves);
+
+        List<RecursiveTask<Long>> tasks = new ArrayList<RecursiveTask<Long>>();
+        for(int i = 0; i < count; ++i) {
+            final State child = new State(s);
+            child.movePiece(moves[i]);
+            tasks.add(new RecursiveTask<Long>() {
+                @Override
+                protected Long compute() {
+                    return perft(child, depth - 1);
+                }
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long nodes = 0;
+            for(RecursiveTask<Long> task : tasks)
+                pool.execute(task);
+            for(RecursiveTask<Long> task : tasks)
+                nodes += task.join();
+            return nodes;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+
+    private long count(State s, int depth, int[][] moves) {
+
+        if(depth == 0 || s.checkFinalState() != 'o')
+            return 1;
+
+        // bulk counting: every move at the last ply is exactly one leaf
+        if(depth == 1)
+            return s.moveGen(moves[depth]);
+
+        // the move-40 draw cuts subtrees short, so the plies left are part of the key
+        long key = s.hash ^ (depth * DEPTH_KEY) ^ (Math.min(s.pliesLeft(), depth + 1) * HORIZON_KEY);
+        int index = ((int) key & cacheMask) * 2;
+        if(cache != null) {
+            long nodes = cache[index + 1];
+            if((cache[index] ^ nodes) == key && nodes != 0)
+                return nodes;
+        }
+
+        int count = s.moveGen(moves[depth]);
+        long nodes = 0;
+        for(int i = 0; i < count; ++i) {
+            s.movePiece(moves[depth][i]);
+            nodes += count(s, depth - 1, moves);
+            s.undoMove(moves[depth][i]);
+        }
+
+        if(cache != null) {
+            cache[index] = key ^ nodes;
+            cache[index + 1] = nodes;
+        }
+        return nodes;
+    }
+
+
+    /**
+     * Run perft from the command line and report node counts and speed
+     * for every depth up to the one given.
+     * Usage: perft depth [file.in] [-hash MB] [-threads N]
+     */
+    public static void main(String[] args) throws IOException {
+
+        int depth = Integer.parseInt(args[0]);
+        String file = null;
+        int hash = 0;
+        int threads = 1;
+
+        for(int i = 1; i < args.length; ++i) {
+            if(args[i].equals("-hash"))
+                hash = Integer.parseInt(args[++i]);
+            else if(args[i].equals("-threads"))
+                threads = Integer.parseInt(args[++i]);
+            else
+                file = args[i];
+        }
+
+        State s = file == null ? new State() : State.read(file);
+        s.printBoard();
+
+        Perft perft = new Perft(hash);
+
+        for(int d = 1; d <= depth; ++d) {
+            long start = System.nanoTime();
+            long nodes = threads > 1 ? perft.parallel(s, d, threads) : perft.perft(s, d);
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            System.out.println(String.format("depth %2d  nodes %,15d  time %,8d ms  %,12d nodes/sec",
+                    d, nodes, elapsed / 1000000, nodes * 1000000000L / elapsed));
+        }
+    }
+}
@@ -1,16 +1,61 @@
 public class Piece {
 
-    public char identity;       // type of piece on the board
-    public int rank;            // rank by array index
-    public int file;            // file by array index
-    public boolean captured;    // is this piece off the board?
-    public int promoted;        // movecount when pawn was promoted
-
-    public Piece(char ident, int r, int f) {
-        this.identity = ident;
-        this.rank = r;
-        this.file = f;
-        this.captured = false;
-        this.promoted = 0;
+    // Piece types. A piece code is color * 6 + type, which matches the
+    // column order of the Zobrist table: k q r b n p K Q R B N P
+    public static final int KING = 0;
+    public static final int QUEEN = 1;
+    public static final int ROOK = 2;
+    public static final int BISHOP = 3;
+    public static final int KNIGHT = 4;
+    public static final int PAWN = 5;
+
+    public static final int BLACK = 0;     // color index of black pieces
+    public static final int WHITE = 1;     // color index of white pieces
+
+    public static final int EMPTY = 12;    // code of an empty square
+
+    private static final String SYMBOLS = "kqrbnpKQRBNP.";
+
+
+    /**
+     * @return the piece code of a color and piece type.
+     */
+    public static int code(int color, int type) {
+        return color * 6 + type;
+    }
+
+
+    /**
+     * @return the piece type (KING..PAWN) of a piece code.
+     */
+    public static int type(int code) {
+        return code % 6;
+    }
+
+
+    /**
+     * @return the color index of a piece code.
+     */
+    public static int color(int code) {
+        return code / 6;
+    }
+
+
+    /**
+     * @return the piece code of a board character.
+     */
+    public static int code(char symbol) {
+        int code = SYMBOLS.indexOf(symbol);
+        if(code < 0)
+            throw new IllegalStateException("unknown piece: " + symbol);
+        return code;
+    }
+
+
+    /**
+     * @return the board character of a piece code.
+     */
+    public static char symbol(int code) {
+        return SYMBOLS.charAt(code);
     }
 }
@@ -1,4 +1,3 @@
-import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 
 
@@ -7,17 +6,19 @@ public class RandomPlayer {
     public void play() {
 
         State s = new State();    // start state
+        int[] moves = new int[State.MAX_MOVES];
 
         boolean finished = false;
 
         do {
             s.printBoard();
 
-            List<Move> moves = s.bestMoves(s.moveGen());   // generate moves for player and prioritizes them
+            int count = s.moveGen(moves);     // generate moves for player and prioritizes them
+            s.bestMoves(moves, count);
 
-            int randomMove = ThreadLocalRandom.current().nextInt(0, moves.size());
+            int randomMove = ThreadLocalRandom.current().nextInt(0, count);
 
-            s.movePiece(moves.get(randomMove));     // next state
+            s.movePiece(moves[randomMove]);     // next state
 
             // check if a player won
             char status = s.checkFinalState();
@@ -0,0 +1,36 @@
+/**
+ * One line of a multi-PV analysis from Negamax.analyze: a root move, its
+ * score for the side on move, the depth it was searched to, the nodes its
+ * search took and its principal variation, the root move first.
+ */
+public class RootMove {
+
+    public final int move;
+    public final int score;
+    public final int depth;
+    public final long nodes;
+    public final int[] pv;
+
+
+    public RootMove(int move, int score, int depth, long nodes, int[] pv) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.pv = pv;
+    }
+
+
+    /**
+     * @return the line as "a2-a3 score 35 depth 8 nodes 12,345 pv a2-a3 b5-b4 ...".
+     */
+    @Override
+    public String toString() {
+
+        StringBuilder line = new StringBuilder(String.format("%s score %d depth %d nodes %,d pv",
+                Move.toString(move), score, depth, nodes));
+        for (int m : pv)
+            line.append(' ').append(Move.toString(m));
+        return line.toString();
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Solves the end of a game exactly. The game is drawn at move 40, so
+ * from a few plies before it the whole tree can be searched: every line
+ * ends in a king capture, a side with no moves, or the draw. The solver
+ * only knows win, draw and loss, which makes alpha-beta cut far more than
+ * with a score. It deepens one ply at a time and stops at the first depth
+ * that proves a win or a loss, or at the plies left before the draw, where
+ * a draw is proven too. A line cut off by the depth counts as a draw until
+ * then. Entries in its own table are keyed on the hash and the plies left,
+ * since the same position has a different result at another move number.
+ */
+public class Solver {
+
+    public static final int WIN = 1;
+    public static final int DRAW = 0;
+    public static final int LOSS = -1;
+
+    private static final long HORIZON_KEY = 0xC2B2AE3D27D4EB4FL;   // mixes the plies left into the key
+    private static final int TABLE_BITS = 20;
+    private static final int POLL_MASK = 1023;      // look at the clock once every 1024 nodes
+    private static final double TIME_SHARE = 0.5;   // of a move's time, the rest is left for the search
+
+    // Packed entries: the move, then the value, the bound and the depth
+    private static final int VALUE_SHIFT = 19;
+    private static final int BOUND_SHIFT = 21;
+    private static final int DEPTH_SHIFT = 23;
+
+    private final long[] keys = new long[1 << TABLE_BITS];
+    private final int[] entries = new int[1 << TABLE_BITS];
+    private final MovePicker[] pickers = new MovePicker[State.DRAW_MOVE + 1];
+
+    private TimeManager time;
+    private Tablebase tablebase;
+    private boolean aborted;
+    private long nodes;
+    private int result;
+
+
+    public Solver() {
+        for (int i = 0; i < pickers.length; ++i)
+            pickers[i] = new MovePicker();
+    }
+
+
+    /**
+     * Solve a state.
+     * @param s The state, left as it was.
+     * @param time The timer of the move. The solver gives up once half the
+     *             soft limit has passed, so the search still has time.
+     * @param tablebase Endgame tablebases to look positions up in, or null.
+     * @return A move that wins if there is one, or else draws, or else
+     * loses as late as can be, or Move.NONE if the solver ran out of time
+     * or there are no moves.
+     */
+    public int solve(State s, TimeManager time, Tablebase tablebase) {
+
+        this.time = time;
+        this.tablebase = tablebase;
+        this.aborted = false;
+        this.nodes = 0;
+
+        int[] moves = new int[State.MAX_MOVES];
+        int count = s.moveGen(moves);
+        int best = Move.NONE;
+
+        for (int depth = 1; depth <= s.pliesLeft() && count > 0; ++depth) {
+
+            int found = Move.NONE;
+            int value = LOSS - 1;
+
+            for (int i = 0; i < count && value < WIN; ++i) {
+                s.movePiece(moves[i]);
+                int v = -solve(s, depth - 1, 1, -WIN, -Math.max(value, LOSS - 1));
+                s.undoMove(moves[i]);
+
+                if (aborted)
+                    return Move.NONE;
+                if (v > value) {
+                    value = v;
+                    found = moves[i];
+                }
+            }
+
+            // a proven loss keeps the move of the depth before, which lasts longest
+            if (value != LOSS || best == Move.NONE)
+                best = found;
+            moveToFront(moves, count, best);
+
+            if (value != DRAW || depth == s.pliesLeft()) {
+                this.result = value;
+                return best;
+            }
+        }
+        return Move.NONE;
+    }
+
+
+    /**
+     * @return WIN, DRAW or LOSS for the side on move of the last state solved.
+     */
+    public int result() {
+        return result;
+    }
+
+
+    /**
+     * @return the nodes of the last solve.
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+
+    private int solve(State s, int depth, int ply, int alpha, int beta) {
+
+        ++this.nodes;
+        if ((this.nodes & POLL_MASK) == 0 && time.spent(TIME_SHARE))
+            this.aborted = true;
+        if (this.aborted)
+            return DRAW;
+
+        char status = s.checkFinalState();
+        if (status == '=')
+            return DRAW;
+        if (status != 'o')
+            return LOSS;             // the side on move has lost its king
+        if (s.canCaptureKing())
+            return WIN;
+
+        depth = Math.min(depth, s.pliesLeft());
+        if (depth == 0)
+            return DRAW;
+
+        int entry = tablebase != null ? tablebase.probe(s) : Tablebase.NOT_FOUND;
+        if (entry != Tablebase.NOT_FOUND) {
+            if (entry == Tablebase.DRAW || Tablebase.distance(entry) > s.pliesLeft())
+                return DRAW;
+            return Tablebase.isWin(entry) ? WIN : LOSS;
+        }
+
+        long key = s.hash ^ (s.pliesLeft() * HORIZON_KEY);
+        int index = (int) key & (keys.length - 1);
+        int hashMove = Move.NONE;
+
+        if (keys[index] == key) {
+            int data = entries[index];
+            int value = ((data >>> VALUE_SHIFT) & 3) - 1;
+            int bound = (data >>> BOUND_SHIFT) & 3;
+            hashMove = data & ((1 << VALUE_SHIFT) - 1);
+
+            // a proven win or loss holds at any depth, a draw only as deep as it was searched
+            boolean proven = (value == WIN && bound != TTableEntry.UPPER) || (value == LOSS && bound != TTableEntry.LOWER);
+            if (proven || (data >>> DEPTH_SHIFT) >= depth) {
+                if (bound == TTableEntry.EXACT
+                        || (bound == TTableEntry.LOWER && value >= beta)
+                        || (bound == TTableEntry.UPPER && value <= alpha))
+                    return value;
+            }
+        }
+
+        int alphaOrig = alpha;
+        int bestValue = LOSS;            // no moves loses
+        int bestMove = Move.NONE;
+        int move;
+
+        MovePicker picker = pickers[ply];
+        picker.init(s, hashMove, Move.NONE, Move.NONE, null);
+
+        while ((move = picker.next()) != Move.NONE) {
+            s.movePiece(move);
+            int value = -solve(s, depth - 1, ply + 1, -beta, -alpha);
+            s.undoMove(move);
+
+            if (value > bestValue || bestMove == Move.NONE) {
+                bestValue = value;
+                bestMove = move;
+            }
+            alpha = Math.max(alpha, value);
+            if (alpha >= beta)
+                break;
+        }
+
+        if (this.aborted)
+            return DRAW;
+
+        int bound = bestValue <= alphaOrig ? TTableEntry.UPPER
+                  : bestValue >= beta ? TTableEntry.LOWER : TTableEntry.EXACT;
+        keys[index] = key;
+        entries[index] = bestMove | (bestValue + 1) << VALUE_SHIFT | bound << BOUND_SHIFT | depth << DEPTH_SHIFT;
+
+        return bestValue;
+    }
+
+
+    /**
+     * Moves a move to the front of the list and shifts the ones before it back.
+     */
+    private static void moveToFront(int[] moves, int count, int move) {
+
+        for (int i = 0; i < count; ++i) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
+        }
+    }
+}
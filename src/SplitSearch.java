@@ -0,0 +1,256 @@
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntSupplier;
+
+
+/**
+ * Young Brothers Wait parallel alpha-beta search on a fork-join pool.
+ * The search itself is Negamax.Tnegamax: at every node deep enough to be
+ * worth splitting, once the first move has been searched on its own to
+ * establish a bound, the remaining moves are handed here and forked as
+ * tasks that each search a copy of the state. Every task borrows a worker
+ * search of its own for its killers, history and move pickers. The tasks
+ * share one alpha through the split point, and when one of them fails
+ * high the split point is marked so every sibling and everything below
+ * it stops.
+ */
+public class SplitSearch {
+
+    private static final int MIN_SPLIT_DEPTH = 3;       // shallower nodes are searched serially
+
+    private final ForkJoinPool pool;
+    private final Negamax main;                          // the search whose settings and timer the workers follow
+
+    // Worker searches, one for every task running at once, made as they are needed
+    private final List<Negamax> workers = new CopyOnWriteArrayList<Negamax>();
+    private final ConcurrentLinkedDeque<Negamax> idle = new ConcurrentLinkedDeque<Negamax>();
+
+
+    /**
+     * The siblings searched in parallel below one node.
+     */
+    static final class SplitPoint {
+
+        private final SplitPoint parent;
+        private final int beta;
+        private volatile int alpha;      // best score found so far by any sibling
+        private volatile boolean cutoff; // a sibling failed high, the rest can stop
+        private int bestValue;           // best score of a finished sibling, and its move
+        private int bestMove = Move.NONE;
+        private volatile boolean horizonBound;   // a sibling's score depends on a tablebase result cut off by the draw
+
+        SplitPoint(SplitPoint parent, int alpha, int beta) {
+            this.parent = parent;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.bestValue = -Integer.MAX_VALUE;
+        }
+
+        /**
+         * @return true once a sibling here or at a split point above has failed high.
+         */
+        boolean cancelled() {
+            for (SplitPoint p = this; p != null; p = p.parent) {
+                if (p.cutoff)
+                    return true;
+            }
+            return false;
+        }
+
+        synchronized void raise(int value, int move) {
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = move;
+            }
+            if (value > alpha)
+                alpha = value;
+            if (value >= beta)
+                cutoff = true;
+        }
+
+        /**
+         * @return the best score of the finished siblings, -Integer.MAX_VALUE if none finished.
+         */
+        synchronized int bestValue() {
+            return bestValue;
+        }
+
+        /**
+         * @return the move of the best score, Move.NONE if no sibling finished.
+         */
+        synchronized int bestMove() {
+            return bestMove;
+        }
+
+        /**
+         * @return true if the node's table entry must keep its horizon.
+         */
+        boolean horizonBound() {
+            return horizonBound;
+        }
+    }
+
+
+    /**
+     * Searches one younger brother on its own copy of the state.
+     */
+    private final class Sibling extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final State s;
+        private final int move;
+        private final int reduction;
+        private final int depth;
+        private final int ply;
+        private final SplitPoint point;
+
+        Sibling(State parent, int move, int reduction, int depth, int ply, SplitPoint point) {
+            this.s = new State(parent);
+            this.s.movePiece(move);
+            this.move = move;
+            this.reduction = reduction;
+            this.depth = depth;
+            this.ply = ply;
+            this.point = point;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (point.cancelled())
+                return;
+
+            Negamax worker = acquire(point);
+            try {
+                long cuts = worker.horizonCuts();
+                int value = worker.searchLate(s, depth, ply, point.alpha, point.beta, reduction);
+                if (worker.horizonCuts() != cuts)
+                    point.horizonBound = true;
+
+                // once a sibling has failed high the rest may have been cut off part way
+                if (!worker.stopped())
+                    point.raise(value, move);
+            }
+            finally {
+                idle.push(worker);
+            }
+        }
+    }
+
+
+    /**
+     * @param threads The number of threads in the fork-join pool.
+     * @param main The search to split, whose table the workers share.
+     */
+    public SplitSearch(int threads, Negamax main) {
+        this.pool = new ForkJoinPool(threads);
+        this.main = main;
+    }
+
+
+    /**
+     * Stop the threads of the fork-join pool. The search cannot be used after.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+
+    /**
+     * @return The number of nodes the workers searched since the last reset.
+     */
+    public long nodes() {
+        long total = 0;
+        for (Negamax worker : workers)
+            total += worker.nodes();
+        return total;
+    }
+
+
+    /**
+     * Forget the nodes, killers and history of every worker.
+     */
+    public void reset() {
+        for (Negamax worker : workers)
+            worker.resetOrdering();
+    }
+
+
+    /**
+     * Run a search in the fork-join pool, so that its nodes can split.
+     * @param search The search, run on a thread of the pool.
+     * @return What the search returns.
+     */
+    int invoke(IntSupplier search) {
+        return pool.invoke(new RecursiveTask<Integer>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected Integer compute() {
+                return search.getAsInt();
+            }
+        });
+    }
+
+
+    /**
+     * @return true if the calling thread is one of the pool's.
+     */
+    boolean inPool() {
+        return ForkJoinTask.getPool() == pool;
+    }
+
+
+    /**
+     * @return true if a node at this depth, searched on the calling thread, can split.
+     */
+    boolean canSplit(int depth) {
+        return depth >= MIN_SPLIT_DEPTH && inPool();
+    }
+
+
+    /**
+     * Search the younger brothers of a node in parallel, each with a null
+     * window first, reduced as the node's own search would reduce it, and
+     * with the full window only if the move may be better.
+     * @param s The state of the node, left as it was.
+     * @param moves The moves still to search.
+     * @param reductions How many plies less deep each move is searched first.
+     * @param depth The depth of the node.
+     * @param ply The ply of the node.
+     * @param parent The split point the node is below, null for none.
+     * @return The split point, with the best score and move of the siblings.
+     */
+    SplitPoint search(State s, int[] moves, int[] reductions, int count,
+                      int depth, int ply, int alpha, int beta, SplitPoint parent) {
+
+        SplitPoint point = new SplitPoint(parent, alpha, beta);
+        Sibling[] siblings = new Sibling[count];
+        for (int j = 0; j < count; ++j)
+            siblings[j] = new Sibling(s, moves[j], reductions[j], depth, ply, point);
+
+        ForkJoinTask.invokeAll(siblings);
+        return point;
+    }
+
+
+    /**
+     * @return an idle worker, or a new one, ready to search below a split point.
+     */
+    private Negamax acquire(SplitPoint point) {
+
+        Negamax worker = idle.poll();
+        if (worker == null) {
+            worker = main.worker(workers.size() + 1);
+            workers.add(worker);
+        }
+        worker.startSibling(main, point);
+        return worker;
+    }
+}
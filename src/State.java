@@ -1,69 +1,122 @@
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import static java.lang.Math.abs;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
 
 
 public class State {
 
-    public char[][] board;    // the current state of the board
+    public static final int MAX_MOVES = 256;    // more moves than any position can have
+    public static final int DRAW_MOVE = 81;     // the game is a draw when the move count reaches this, after 40 moves each
+
     public char turn;         // player on move
-    private int moveCount;    // the current move number
-
-    private Piece o = new Piece('.', 0, 0);         // blank square piece
-    private Piece k, q, b, n, r, p1, p2, p3, p4, p5;            // individual black pieces
-    private Piece K, Q, B, N, R, P1, P2, P3, P4, P5;            // individual white pieces
-    private List<Piece> blackPieces = new ArrayList<Piece>();   // list of black's pieces
-    private List<Piece> whitePieces = new ArrayList<Piece>();       // list of white's pieces
-
-    private ZobristTable ztable = new ZobristTable();    // Zobrist table object
-    public long hash;                                    // current hash of the state
-
-    // All board coordinates
-    private String[][] map = new String[][] {
-            { "a6", "b6", "c6", "d6", "e6"},
-            { "a5", "b5", "c5", "d5", "e5"},
-            { "a4", "b4", "c4", "d4", "e4"},
-            { "a3", "b3", "c3", "d3", "e3"},
-            { "a2", "b2", "c2", "d2", "e2"},
-            { "a1", "b1", "c1", "d1", "e1"}
+    private int moveCount;    // the current ply, counted from 1
+
+    // Bitboards. Square index is rank * 5 + file, so a6 is bit 0 and e1 is bit 29.
+    private long[] pieces = new long[12];     // one bitboard for each piece code
+    private long[] occupied = new long[2];    // all the pieces of each color
+    private int[] squares = new int[30];      // piece code on each square, Piece.EMPTY if none
+
+    // Running evaluation totals for each color, updated by movePiece and undoMove
+    private int[] material = new int[2];
+    private int[] positional = new int[2];
+
+    public long hash;                                    // current Zobrist hash of the state
+
+    private int[] scores = new int[MAX_MOVES];    // scratch space for ordering moves
+    private int[] swap = new int[32];             // scratch space for static exchange evaluation
+
+    // Kinds of moves for the generator
+    private static final int ALL_MOVES = 0;
+    private static final int TACTICAL_MOVES = 1;     // captures and promotions
+    private static final int QUIET_MOVES = 2;        // everything else
+
+    // Precomputed attack tables for every square
+    private static final long[] KING_ATTACKS = new long[30];
+    private static final long[] KNIGHT_ATTACKS = new long[30];
+    private static final long[] BISHOP_STEPS = new long[30];       // non-capturing orthogonal bishop steps
+    private static final long[][] PAWN_ATTACKS = new long[2][30];  // diagonal pawn captures by color
+    private static final long[][] PAWN_PUSHES = new long[2][30];   // forward pawn moves by color
+    private static final long[] PROMOTION_RANK = new long[] { 0x3E000000L, 0x1FL };    // last rank by color
+    private static final long BOARD = (1L << 30) - 1;                                 // every square
+
+    // Slider rays in each direction. The first four are orthogonal, the last four diagonal.
+    private static final int[][] DIRECTIONS = new int[][] {
+            { 1, 0}, { 0, 1}, {-1, 0}, { 0, -1},
+            { 1, 1}, {-1, 1}, {-1, -1}, { 1, -1}
+    };
+    private static final long[][] RAYS = new long[8][30];
+    private static final boolean[] RAY_FORWARD = new boolean[8];    // ray runs toward higher squares
+
+    // Material value of each piece type, and positional score of every piece code on every square
+    public static final int[] MATERIAL = new int[] { 1000, 900, 500, 300, 300, 100 };
+    private static final int[][] POSITION = new int[12][30];
+
+    // Recapture order for static exchange evaluation, cheapest piece first
+    private static final int[] SEE_ORDER = new int[] {
+            Piece.PAWN, Piece.KNIGHT, Piece.BISHOP, Piece.ROOK, Piece.QUEEN, Piece.KING
     };
 
+    // Cross-check the incremental evaluation against a full recompute (-Dminichess.checkEval=true)
+    private static final boolean CHECK_EVAL = Boolean.getBoolean("minichess.checkEval");
+
+    // Cross-check the incremental hash against ZobristTable.hash2 (-Dminichess.checkHash=true)
+    private static final boolean CHECK_HASH = Boolean.getBoolean("minichess.checkHash");
+
+    static {
+        for(int sq = 0; sq < 30; ++sq) {
+            int rank = sq / 5;
+            int file = sq % 5;
+
+            KING_ATTACKS[sq] = steps(rank, file, new int[][] {
+                    {0, 1}, {1, 1}, {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}, {-1, 1}});
+            KNIGHT_ATTACKS[sq] = steps(rank, file, new int[][] {
+                    {1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}});
+            BISHOP_STEPS[sq] = steps(rank, file, new int[][] {{0, 1}, {1, 0}, {0, -1}, {-1, 0}});
+
+            // black pawns move down the array, white pawns move up
+            PAWN_ATTACKS[Piece.BLACK][sq] = steps(rank, file, new int[][] {{-1, 1}, {1, 1}});
+            PAWN_ATTACKS[Piece.WHITE][sq] = steps(rank, file, new int[][] {{-1, -1}, {1, -1}});
+            PAWN_PUSHES[Piece.BLACK][sq] = steps(rank, file, new int[][] {{0, 1}});
+            PAWN_PUSHES[Piece.WHITE][sq] = steps(rank, file, new int[][] {{0, -1}});
+
+            for(int d = 0; d < 8; ++d) {
+                int x = file + DIRECTIONS[d][0];
+                int y = rank + DIRECTIONS[d][1];
+                while(x >= 0 && x <= 4 && y >= 0 && y <= 5) {
+                    RAYS[d][sq] |= 1L << (y * 5 + x);
+                    x += DIRECTIONS[d][0];
+                    y += DIRECTIONS[d][1];
+                }
+            }
+        }
+
+        for(int d = 0; d < 8; ++d)
+            RAY_FORWARD[d] = DIRECTIONS[d][1] > 0 || (DIRECTIONS[d][1] == 0 && DIRECTIONS[d][0] > 0);
+
+        for(int code = 0; code < 12; ++code) {
+            for(int sq = 0; sq < 30; ++sq)
+                POSITION[code][sq] = positionValue(code, sq / 5, sq % 5);
+        }
+    }
+
 
     /**
-     * Constructor initializes starting board, move count, and piece lists.
+     * Constructor initializes starting board, move count, and bitboards.
      */
     public State() {
         this.turn = 'W';      // white always moves first
         this.moveCount = 1;
 
-        this.k = new Piece('k', 0, 0); this.q = new Piece('q', 0, 1);
-        this.b = new Piece('b', 0, 2); this.n = new Piece('n', 0, 3);
-        this.r = new Piece('r', 0, 4); this.p1 = new Piece('p', 1, 0);
-        this.p2 = new Piece('p', 1, 1); this.p3 = new Piece('p', 1, 2);
-        this.p4 = new Piece('p', 1, 3); this.p5 = new Piece('p', 1, 4);
-
-        this.K = new Piece('K', 5, 4); this.Q = new Piece('Q', 5, 3);
-        this.B = new Piece('B', 5, 2); this.N = new Piece('N', 5, 1);
-        this.R = new Piece('R', 5, 0); this.P1 = new Piece('P', 4, 0);
-        this.P2 = new Piece('P', 4, 1); this.P3 = new Piece('P', 4, 2);
-        this.P4 = new Piece('P', 4, 3); this.P5 = new Piece('P', 4, 4);
-
-        this.blackPieces.addAll(Arrays.asList(this.k, this.q, this.b, this.n, this.r,
-                this.p1, this.p2, this.p3, this.p4, this.p5));
-        this.whitePieces.addAll(Arrays.asList(this.K, this.Q, this.B, this.N, this.R,
-                this.P1, this.P2, this.P3, this.P4, this.P5));
-
-        this.board = new char[][] {
+        setBoard(new char[][] {
                 { 'k', 'q', 'b', 'n', 'r'},
                 { 'p', 'p', 'p', 'p', 'p'},
                 { '.', '.', '.', '.', '.'},
                 { '.', '.', '.', '.', '.'},
                 { 'P', 'P', 'P', 'P', 'P'},
                 { 'R', 'N', 'B', 'Q', 'K'}
-        };
+        });
 
-        this.hash = ztable.startHash();
+        this.hash = ZobristTable.startHash();
     }
 
 
@@ -72,311 +125,657 @@ public class State {
      * Only used for testing the move generator.
      */
     public State(char turn, char[][] setBoard) {
+        this(1, turn, setBoard);
+    }
+
+
+    /**
+     * Initializes the board to any position at any move number.
+     */
+    public State(int moveCount, char turn, char[][] setBoard) {
 
         this.turn = turn;
-        this.board = new char[6][5];
-
-        this.k = new Piece('k', 0, 0); this.q = new Piece('q', 0, 1);
-        this.b = new Piece('b', 0, 2); this.n = new Piece('n', 0, 3);
-        this.r = new Piece('r', 0, 4); this.p1 = new Piece('p', 1, 0);
-        this.p2 = new Piece('p', 1, 1); this.p3 = new Piece('p', 1, 2);
-        this.p4 = new Piece('p', 1, 3); this.p5 = new Piece('p', 1, 4);
-
-        this.K = new Piece('K', 5, 4); this.Q = new Piece('Q', 5, 3);
-        this.B = new Piece('B', 5, 2); this.N = new Piece('N', 5, 1);
-        this.R = new Piece('R', 5, 0); this.P1 = new Piece('P', 4, 0);
-        this.P2 = new Piece('P', 4, 1); this.P3 = new Piece('P', 4, 2);
-        this.P4 = new Piece('P', 4, 3); this.P5 = new Piece('P', 4, 4);
-
-        this.blackPieces.addAll(Arrays.asList(this.k, this.q, this.b, this.n, this.r,
-                this.p1, this.p2, this.p3, this.p4, this.p5));
-        this.whitePieces.addAll(Arrays.asList(this.K, this.Q, this.B, this.N, this.R,
-                this.P1, this.P2, this.P3, this.P4, this.P5));
-
-        for (Piece p : blackPieces)
-            p.captured = true;
-        for (Piece p : whitePieces)
-            p.captured = true;
+        this.moveCount = moveCount;
+        setBoard(setBoard);
 
-        for(int i = 0; i < 6; ++i) {
-            for (int j = 0; j < 5; ++j) {
-                this.board[i][j] = setBoard[i][j];
-                if(this.board[i][j] != '.')
-                    updatePiece(this.board[i][j], i, j);
-            }
+        this.hash = ZobristTable.hash2(this);
+    }
+
+
+    /**
+     * Copy constructor, so each search thread can move pieces on its own state.
+     */
+    public State(State other) {
+
+        this.turn = other.turn;
+        this.moveCount = other.moveCount;
+        this.pieces = other.pieces.clone();
+        this.occupied = other.occupied.clone();
+        this.squares = other.squares.clone();
+        this.material = other.material.clone();
+        this.positional = other.positional.clone();
+        this.hash = other.hash;
+    }
+
+
+    /**
+     * Reads a state in the genmoves test format: a line with the move
+     * number and the player on move, like "11 W", then the six ranks.
+     * The move number counts moves of both sides, as IMCS does, so move
+     * n is ply 2n-1 for white and ply 2n for black.
+     * @param file The path of the file.
+     * @return The state in the file.
+     */
+    public static State read(String file) throws IOException {
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            return read(br);
         }
     }
 
 
     /**
-     * Updates the list of pieces for each player when starting with a board that
-     * is not in the default start state. This is currently only used for testing
-     * the move generator.
+     * Reads a state in the genmoves test format from a reader.
+     * @return The state that was read.
      */
-    public void updatePiece(char piece, int rank, int file) {
+    public static State read(BufferedReader br) throws IOException {
 
-        List<Piece> pieces = Character.isLowerCase(piece) ? this.blackPieces : this.whitePieces;
+        String[] header = br.readLine().trim().split("\\s+");
+        char[][] board = new char[6][5];
 
-        for (Piece p : pieces){
-            if(piece == p.identity) {
-                if(p.captured) {
-                    p.rank = rank;
-                    p.file = file;
-                    p.captured = false;
-                    return;
-                }
-                else if(piece == 'q') {
-                    for (Piece p2 : this.blackPieces) {
-                        if(p2.identity == 'p' && p2.captured) {
-                            p2.identity = 'q';
-                            p2.rank = rank;
-                            p2.file = file;
-                            p2.captured = false;
-                            return;
-                        }
-                    }
-                }
-                else if(piece == 'Q') {
-                    for (Piece p2 : this.whitePieces) {
-                        if(p2.identity == 'P' && p2.captured) {
-                            p2.identity = 'Q';
-                            p2.rank = rank;
-                            p2.file = file;
-                            p2.captured = false;
-                            return;
-                        }
-                    }
-                }
+        for(int i = 0; i < 6; ++i) {
+            String line = br.readLine();
+            for(int j = 0; j < 5; ++j)
+                board[i][j] = line.charAt(j);
+        }
+        int move = Integer.parseInt(header[0]);
+        char turn = header[1].charAt(0);
+        return new State(turn == 'W' ? 2 * move - 1 : 2 * move, turn, board);
+    }
+
+
+    /**
+     * Builds the square map and the piece and color bitboards from a character board.
+     */
+    private void setBoard(char[][] board) {
+
+        for(int sq = 0; sq < 30; ++sq) {
+            int code = Piece.code(board[sq / 5][sq % 5]);
+            this.squares[sq] = code;
+            if(code != Piece.EMPTY) {
+                this.pieces[code] |= 1L << sq;
+                this.occupied[Piece.color(code)] |= 1L << sq;
+                this.material[Piece.color(code)] += MATERIAL[Piece.type(code)];
+                this.positional[Piece.color(code)] += POSITION[code][sq];
             }
         }
     }
 
 
     /**
-     * Move any piece on the board. Increase move count.
-     * Promote pawns if they reach the opposite end of the board.
-     * @param move The move object to manipulate state with.
+     * @return the piece code on a square, Piece.EMPTY if there is none.
      */
-    public void movePiece(Move move) {
+    public int pieceAt(int sq) {
+        return this.squares[sq];
+    }
 
-        //this.hash = ztable.hash(move, this.hash);       // get the hash of the new state
 
-        // set capture to true
-        move.toPiece.captured = true;
+    /**
+     * @return the squares of the pieces with a piece code, as a bitboard.
+     */
+    public long pieces(int code) {
+        return this.pieces[code];
+    }
 
-        move.fromPiece.rank = move.toRank;
-        move.fromPiece.file = move.toFile;
 
-        board[move.fromRank][move.fromFile] = '.';                   // make previous space empty
-        board[move.toRank][move.toFile] = move.fromPiece.identity;   // move piece
+    /**
+     * @return the number of pieces of both colors on the board, kings included.
+     */
+    public int pieceCount() {
+        return Long.bitCount(this.occupied[0] | this.occupied[1]);
+    }
 
-        // promote pawn if opposite end of the board is reached
-        if(move.fromPiece.identity == 'p' && move.toRank == 5) {
-            board[move.toRank][move.toFile] = 'q';
-            move.fromPiece.identity = 'q';
-            move.fromPiece.promoted = moveCount;
+
+    /**
+     * Move any piece on the board. Increase move count.
+     * Promote pawns if they reach the opposite end of the board.
+     * @param move The encoded move to manipulate state with.
+     */
+    public void movePiece(int move) {
+
+        this.hash = ZobristTable.hash(move, this.hash);       // get the hash of the new state
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = Move.piece(move);
+        int captured = Move.captured(move);
+        int color = Piece.color(piece);
+
+        // remove a captured piece
+        if(captured != Piece.EMPTY) {
+            this.pieces[captured] ^= 1L << to;
+            this.occupied[color ^ 1] ^= 1L << to;
+            this.material[color ^ 1] -= MATERIAL[Piece.type(captured)];
+            this.positional[color ^ 1] -= POSITION[captured][to];
         }
-        else if(move.fromPiece.identity == 'P' && move.toRank == 0) {
-            board[move.toRank][move.toFile] = 'Q';
-            move.fromPiece.identity = 'Q';
-            move.fromPiece.promoted = moveCount;
+
+        // promote pawn if opposite end of the board is reached
+        int placed = piece;
+        if(Move.isPromotion(move)) {
+            placed = Piece.code(color, Piece.QUEEN);
+            this.material[color] += MATERIAL[Piece.QUEEN] - MATERIAL[Piece.PAWN];
         }
 
+        this.pieces[piece] ^= 1L << from;
+        this.pieces[placed] ^= 1L << to;
+        this.occupied[color] ^= (1L << from) | (1L << to);
+        this.positional[color] += POSITION[placed][to] - POSITION[piece][from];
+
+        squares[from] = Piece.EMPTY;     // make previous space empty
+        squares[to] = placed;            // move piece
+
         this.turn = this.turn == 'W' ? 'B' : 'W';   // switch turn
         ++this.moveCount;    // increase move count
+
+        if(CHECK_HASH)
+            checkHash();
+    }
+
+
+    /**
+     * Pass the turn to the other player without moving, for null move
+     * pruning. The pass uses up a ply like any other move.
+     */
+    public void makeNullMove() {
+        this.hash = ZobristTable.nullMove(this.hash);
+        this.turn = this.turn == 'W' ? 'B' : 'W';
+        ++this.moveCount;
+    }
+
+
+    /**
+     * Take back a null move.
+     */
+    public void undoNullMove() {
+        this.hash = ZobristTable.nullMove(this.hash);
+        this.turn = this.turn == 'W' ? 'B' : 'W';
+        --this.moveCount;
+    }
+
+
+    /**
+     * @return true if the player on move has a queen, rook, bishop or knight,
+     * so passing is unlikely to be better than any move (no zugzwang).
+     */
+    public boolean hasPieces() {
+        int us = this.turn == 'W' ? Piece.WHITE : Piece.BLACK;
+        long pawnsAndKing = this.pieces[Piece.code(us, Piece.PAWN)] | this.pieces[Piece.code(us, Piece.KING)];
+        return (this.occupied[us] & ~pawnsAndKing) != 0;
     }
 
 
     /**
      * Undo a move on the board and return the new state.
-     * @param move The move object to revert to previous state.
+     * @param move The encoded move to revert to previous state.
      */
-    public void undoMove(Move move) {
+    public void undoMove(int move) {
 
         this.turn = this.turn == 'W' ? 'B' : 'W';   // switch turn
         --this.moveCount;
 
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = Move.piece(move);
+        int captured = Move.captured(move);
+        int color = Piece.color(piece);
+
         // unpromote pawn if necessary
-        if(move.fromPiece.promoted == moveCount) {
-            if(move.fromPiece.identity == 'q')
-                move.fromPiece.identity = 'p';
-            else
-                move.fromPiece.identity = 'P';
-            move.fromPiece.promoted = 0;
+        int placed = piece;
+        if(Move.isPromotion(move)) {
+            placed = Piece.code(color, Piece.QUEEN);
+            this.material[color] -= MATERIAL[Piece.QUEEN] - MATERIAL[Piece.PAWN];
         }
 
+        this.pieces[placed] ^= 1L << to;
+        this.pieces[piece] ^= 1L << from;
+        this.occupied[color] ^= (1L << from) | (1L << to);
+        this.positional[color] -= POSITION[placed][to] - POSITION[piece][from];
+
         // un-capture piece
-        move.toPiece.captured = false;
-        board[move.toRank][move.toFile] = move.toPiece.identity;
-        board[move.fromRank][move.fromFile] = move.fromPiece.identity;
-
-        move.fromPiece.rank = move.fromRank;
-        move.fromPiece.file = move.fromFile;
-        //this.hash = ztable.hash(move, this.hash);    // undo the hash
-    }
-
-
-    /**
-     *  Types of capture scenarios when moving a piece.
-     *  Pawns, as an example, can ONLY capture when they move
-     *  diagonally, and cannot capture when they move forward.
-     */
-    public enum Capture {
-        TRUE, FALSE, ONLY
-    }
-
-
-    /**
-     * Generate a list moves for the current player's turn. Once a piece is found
-     * on the board, the moves are found by symmetrically scanning all the legal
-     * surrounding squares, including captures.
-     * @return A list of moves for the current player.
-     */
-    public List<Move> moveGen() {
-
-        List<Move> moves = new ArrayList<Move>();    // list of moves
-
-        List<Piece> currentPlayerPieces = this.turn == 'W' ? this.whitePieces : this.blackPieces;
-
-        for(Piece p : currentPlayerPieces) {
-            if(!p.captured) {
-                switch(Character.toLowerCase(p.identity)) {
-                    case 'k':
-                        moves.addAll(symmScan(p.file, p.rank, 0, 1, true, Capture.TRUE));
-                        moves.addAll(symmScan(p.file, p.rank, 1, 1, true, Capture.TRUE));
-                        break;
-                    case 'q':
-                        moves.addAll(symmScan(p.file, p.rank, 0, 1, false, Capture.TRUE));
-                        moves.addAll(symmScan(p.file, p.rank, 1, 1, false, Capture.TRUE));
-                        break;
-                    case 'b':
-                        moves.addAll(symmScan(p.file, p.rank, 0, 1, true, Capture.FALSE));
-                        moves.addAll(symmScan(p.file, p.rank, 1, 1, false, Capture.TRUE));
-                        break;
-                    case 'n':
-                        moves.addAll(symmScan(p.file, p.rank, 1, 2, true, Capture.TRUE));
-                        moves.addAll(symmScan(p.file, p.rank, -1, 2, true, Capture.TRUE));
-                        break;
-                    case 'r':
-                        moves.addAll(symmScan(p.file, p.rank, 0, 1, false, Capture.TRUE));
-                        break;
-                    case 'p':
-                        int dir = this.turn == 'B' ? 1 :-1;  // set direction for black or white pawn
-                        moves.addAll(moveScan(p.file, p.rank, -1, dir, true, Capture.ONLY));
-                        moves.addAll(moveScan(p.file, p.rank, 1, dir, true, Capture.ONLY));
-                        moves.addAll(moveScan(p.file, p.rank, 0, dir, true, Capture.FALSE));
-                        break;
+        if(captured != Piece.EMPTY) {
+            this.pieces[captured] ^= 1L << to;
+            this.occupied[color ^ 1] ^= 1L << to;
+            this.material[color ^ 1] += MATERIAL[Piece.type(captured)];
+            this.positional[color ^ 1] += POSITION[captured][to];
+        }
+
+        squares[to] = captured;
+        squares[from] = piece;
+        this.hash = ZobristTable.hash(move, this.hash);    // undo the hash
+
+        if(CHECK_HASH)
+            checkHash();
+    }
+
+
+    /**
+     * Throws if the incremental hash has drifted from a full recompute.
+     */
+    private void checkHash() {
+        long full = ZobristTable.hash2(this);
+        if(this.hash != full)
+            throw new IllegalStateException("incremental hash " + this.hash + " != " + full);
+    }
+
+
+    /**
+     * Generate the moves for the current player's turn. The destination
+     * squares of every piece come from the precomputed attack tables, and
+     * the sliding pieces stop at the first blocker on each ray.
+     * @param moves The array the encoded moves are written to.
+     * @return The number of moves for the current player.
+     */
+    public int moveGen(int[] moves) {
+        return generate(moves, ALL_MOVES);
+    }
+
+
+    /**
+     * Generate only the captures and pawn promotions of the player on move.
+     * @param moves The array the encoded moves are written to.
+     * @return The number of captures and promotions.
+     */
+    public int genCaptures(int[] moves) {
+        return generate(moves, TACTICAL_MOVES);
+    }
+
+
+    /**
+     * Generate only the moves that neither capture nor promote.
+     * Together with genCaptures this is every move moveGen makes.
+     * @param moves The array the encoded moves are written to.
+     * @return The number of quiet moves.
+     */
+    public int genQuiets(int[] moves) {
+        return generate(moves, QUIET_MOVES);
+    }
+
+
+    /**
+     * Writes the moves of one kind for the player on move.
+     * @param kind ALL_MOVES, TACTICAL_MOVES or QUIET_MOVES.
+     * @return The number of moves written.
+     */
+    private int generate(int[] moves, int kind) {
+
+        int count = 0;
+        int us = this.turn == 'W' ? Piece.WHITE : Piece.BLACK;
+        long own = this.occupied[us];
+        long enemy = this.occupied[us ^ 1];
+        long all = own | enemy;
+
+        for(int type = Piece.KING; type <= Piece.PAWN; ++type) {
+
+            long bb = this.pieces[Piece.code(us, type)];
+            int piece = Piece.code(us, type);
+            long promotions = type == Piece.PAWN ? PROMOTION_RANK[us] : 0;
+
+            long filter = kind == TACTICAL_MOVES ? enemy | promotions
+                        : kind == QUIET_MOVES ? ~(enemy | promotions) : -1L;
+
+            while(bb != 0) {
+                int from = Long.numberOfTrailingZeros(bb);
+                bb &= bb - 1;
+
+                long targets = targets(type, from, us, own, all) & filter;
+
+                while(targets != 0) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    targets &= targets - 1;
+                    moves[count++] = Move.encode(from, to, piece, squares[to], (promotions & (1L << to)) != 0);
                 }
             }
         }
-        return moves;
+        return count;
+    }
+
+
+    /**
+     * @return the squares a piece of a type and color on a square can move to.
+     */
+    private static long targets(int type, int from, int us, long own, long all) {
+
+        switch(type) {
+            case Piece.KING:
+                return KING_ATTACKS[from] & ~own;
+            case Piece.QUEEN:
+                return (rookAttacks(from, all) | bishopAttacks(from, all)) & ~own;
+            case Piece.ROOK:
+                return rookAttacks(from, all) & ~own;
+            case Piece.BISHOP:
+                return (bishopAttacks(from, all) & ~own) | (BISHOP_STEPS[from] & ~all);
+            case Piece.KNIGHT:
+                return KNIGHT_ATTACKS[from] & ~own;
+            default:
+                return (PAWN_ATTACKS[us][from] & all & ~own) | (PAWN_PUSHES[us][from] & ~all);
+        }
     }
 
 
     /**
-     * Symmetrically scan a position in 4 directions and return the list of moves found.
-     * @param x0 Original x-coordinate on the board.
-     * @param y0 Original y-coordinate on the board.
-     * @param dx Change in x-direction.
-     * @param dy Change in y-direction.
-     * @param stopShort Stop short after traveling one square.
-     * @param capture The capture type.
+     * Generate the moves that could have led to this state: every move of
+     * the player who just moved that, made in some earlier state, gives
+     * this one. It is the reverse of moveGen, so undoMove takes back each
+     * of them. A queen on its last rank may also have been a pawn that
+     * promoted there.
+     * @param moves The array the encoded moves are written to.
+     * @param captured The piece code the moves captured, which undoMove puts
+     *                 back where they went, or Piece.EMPTY for moves that
+     *                 captured nothing.
+     * @return The number of moves.
      */
-    private List<Move> symmScan(int x0, int y0, int dx, int dy, boolean stopShort, Capture capture) {
+    public int unmoveGen(int[] moves, int captured) {
+
+        int count = 0;
+        int them = this.turn == 'W' ? Piece.BLACK : Piece.WHITE;    // the player who just moved
+        long all = this.occupied[0] | this.occupied[1];
+        long empty = ~all & BOARD;
+        boolean capture = captured != Piece.EMPTY;
+
+        if(capture && Piece.color(captured) == them)
+            return 0;
+
+        for(int type = Piece.KING; type <= Piece.PAWN; ++type) {
+
+            int piece = Piece.code(them, type);
+            long bb = this.pieces[piece];
+
+            while(bb != 0) {
+                int to = Long.numberOfTrailingZeros(bb);
+                bb &= bb - 1;
 
-        List<Move> moves = new ArrayList<Move>();
+                long origins = origins(type, to, them, all, capture) & empty;
+                while(origins != 0) {
+                    int from = Long.numberOfTrailingZeros(origins);
+                    origins &= origins - 1;
+                    moves[count++] = Move.encode(from, to, piece, captured, false);
+                }
 
-        for(int i = 0; i < 4; ++i) {
-            moves.addAll(moveScan(x0, y0, dx, dy, stopShort, capture));
-            int temp = dx;
-            dx = dy;
-            dy = temp;
-            dy *= -1;
+                // the queen may have been a pawn until this move
+                if(type == Piece.QUEEN && (PROMOTION_RANK[them] & (1L << to)) != 0) {
+                    int pawn = Piece.code(them, Piece.PAWN);
+                    origins = origins(Piece.PAWN, to, them, all, capture) & empty;
+                    while(origins != 0) {
+                        int from = Long.numberOfTrailingZeros(origins);
+                        origins &= origins - 1;
+                        moves[count++] = Move.encode(from, to, pawn, captured, true);
+                    }
+                }
+            }
         }
-        return moves;
+        return count;
     }
 
 
     /**
-     * Finds all moves, traveling in one direction on the board.
-     * @param x0 Original x-coordinate on the board.
-     * @param y0 Original y-coordinate on the board.
-     * @param dx Change in x-direction.
-     * @param dy Change in y-direction.
-     * @param stopShort Stop short after traveling one square.
-     * @param capture The capture type.
+     * The reverse of targets: the squares a piece of a type and color may
+     * have moved from to reach a square, empty or not.
      */
-    private List<Move> moveScan(int x0, int y0, int dx, int dy, boolean stopShort, Capture capture) {
+    private static long origins(int type, int to, int color, long all, boolean capture) {
+
+        switch(type) {
+            case Piece.KING:
+                return KING_ATTACKS[to];
+            case Piece.QUEEN:
+                return rookAttacks(to, all) | bishopAttacks(to, all);
+            case Piece.ROOK:
+                return rookAttacks(to, all);
+            case Piece.BISHOP:
+                return bishopAttacks(to, all) | (capture ? 0 : BISHOP_STEPS[to]);
+            case Piece.KNIGHT:
+                return KNIGHT_ATTACKS[to];
+            default:
+                // a pawn of one color moves backwards the way the other color moves forwards
+                return capture ? PAWN_ATTACKS[color ^ 1][to] : PAWN_PUSHES[color ^ 1][to];
+        }
+    }
 
-        int x = x0;
-        int y = y0;
-        char c = this.turn;                        // color of current player
-        char oc = this.turn == 'W' ? 'B' : 'W';    // opponent color
-        List<Move> moves = new ArrayList<Move>();
-        Piece fromPiece = identifyPiece(this.turn, y0, x0);
-        Piece toPiece;
 
-        do {
-            x += dx;
-            y += dy;
-            toPiece = o;    // default blank piece
-            if(x < 0 || x > 4 || y < 0 || y > 5)   // out of bounds
+    /**
+     * Checks that a move, such as one from the transposition table or a
+     * killer from another node, can be played in this state: the piece and
+     * the captured piece are where the move says, and moveGen would make it.
+     * @param move The encoded move.
+     * @return true if moveGen generates this exact move here.
+     */
+    public boolean isPseudoLegal(int move) {
+
+        if(move == Move.NONE)
+            return false;
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = Move.piece(move);
+        int us = this.turn == 'W' ? Piece.WHITE : Piece.BLACK;
+
+        if(from >= 30 || to >= 30 || piece >= Piece.EMPTY || Piece.color(piece) != us)
+            return false;
+        if(squares[from] != piece || squares[to] != Move.captured(move))
+            return false;
+
+        long own = this.occupied[us];
+        long all = own | this.occupied[us ^ 1];
+        if((targets(Piece.type(piece), from, us, own, all) & (1L << to)) == 0)
+            return false;
+
+        boolean promotion = Piece.type(piece) == Piece.PAWN && (PROMOTION_RANK[us] & (1L << to)) != 0;
+        return promotion == Move.isPromotion(move);
+    }
+
+
+    /**
+     * @return the material a move wins: the captured piece and the queen a promotion makes.
+     */
+    public static int materialGain(int move) {
+
+        int gain = Move.isCapture(move) ? MATERIAL[Piece.type(Move.captured(move))] : 0;
+        if(Move.isPromotion(move))
+            gain += MATERIAL[Piece.QUEEN] - MATERIAL[Piece.PAWN];
+        return gain;
+    }
+
+
+    /**
+     * Static exchange evaluation: the material the side on move ends up with
+     * after a move and the best sequence of recaptures on its square, where
+     * either side may stop recapturing when that is better for it. Each side
+     * recaptures with its least valuable piece first, and sliders behind
+     * the pieces that have already captured join in. The attackers follow
+     * moveGen's rules: pawns capture only diagonally, the bishop's orthogonal
+     * step never captures, and a pawn that captures onto its last rank
+     * becomes a queen. Taking a king ends the exchange.
+     * @param move The encoded move, usually a capture or a promotion.
+     * @return The material won, negative if the exchange loses material.
+     */
+    public int see(int move) {
+
+        int to = Move.to(move);
+        int piece = Move.piece(move);
+        int side = Piece.color(piece) ^ 1;
+        long occupied = (this.occupied[0] | this.occupied[1]) ^ (1L << Move.from(move));
+
+        int[] gain = this.swap;
+        int d = 0;
+        gain[0] = materialGain(move);
+        if(Move.isCapture(move) && Piece.type(Move.captured(move)) == Piece.KING)
+            return gain[0];
+
+        // the value of the piece standing on the square, which the next capture wins
+        int onSquare = MATERIAL[Move.isPromotion(move) ? Piece.QUEEN : Piece.type(piece)];
+        boolean king = Piece.type(piece) == Piece.KING;
+
+        while(d < gain.length - 1) {
+
+            // the least valuable piece of the side to recapture
+            long attackers = attackersTo(to, side, occupied);
+            if(attackers == 0)
                 break;
-            char piece = board[y][x];    // get the piece
-            if(piece != '.') {           // there is a piece at x, y
-                if((Character.isLowerCase(piece) && c == 'B') || (Character.isUpperCase(piece) && c == 'W')) // our own piece
+            int type = Piece.PAWN;
+            long bb = 0;
+            for(int t : SEE_ORDER) {
+                bb = attackers & this.pieces[Piece.code(side, t)];
+                if(bb != 0) {
+                    type = t;
                     break;
-                if(capture == Capture.FALSE)
-                    break;
-                stopShort = true;     // cannot go past another piece on the board
-                toPiece = identifyPiece(oc, y, x);
+                }
             }
-            else if(capture == Capture.ONLY)  // if only a capture is allowed
-                break;
 
-            moves.add(new Move((map[y0][x0]+ "-" + map[y][x]), fromPiece, toPiece));
+            boolean promotes = type == Piece.PAWN && (PROMOTION_RANK[side] & (1L << to)) != 0;
+
+            ++d;
+            gain[d] = onSquare - gain[d - 1];
+            if(promotes)
+                gain[d] += MATERIAL[Piece.QUEEN] - MATERIAL[Piece.PAWN];
+            if(king)
+                break;      // the king was taken, the game is over
+
+            onSquare = MATERIAL[promotes ? Piece.QUEEN : type];
+            king = type == Piece.KING;
+            occupied ^= bb & -bb;
+            side ^= 1;
+        }
+
+        // each side only continues the exchange if it gains by doing so
+        for(; d > 0; --d)
+            gain[d - 1] = -Integer.max(-gain[d - 1], gain[d]);
+        return gain[0];
+    }
+
+
+    /**
+     * @return true if a piece of the color could capture on the square.
+     */
+    public boolean isAttacked(int sq, int color) {
+        return attackersTo(sq, color, this.occupied[0] | this.occupied[1]) != 0;
+    }
+
+
+    /**
+     * @return true if the player on move's king can be captured next move.
+     */
+    public boolean inCheck() {
+        int us = this.turn == 'W' ? Piece.WHITE : Piece.BLACK;
+        long king = this.pieces[Piece.code(us, Piece.KING)];
+        return king != 0 && isAttacked(Long.numberOfTrailingZeros(king), us ^ 1);
+    }
+
+
+    /**
+     * @return true if the player on move can capture the other king and win.
+     */
+    public boolean canCaptureKing() {
+        int us = this.turn == 'W' ? Piece.WHITE : Piece.BLACK;
+        long king = this.pieces[Piece.code(us ^ 1, Piece.KING)];
+        return king != 0 && isAttacked(Long.numberOfTrailingZeros(king), us);
+    }
+
 
-        } while (!stopShort);
-        return moves;
+    /**
+     * @return the pieces of a color that can capture on a square, with the given pieces on the board.
+     */
+    private long attackersTo(int sq, int color, long occupied) {
+
+        long queens = this.pieces[Piece.code(color, Piece.QUEEN)];
+        long attackers = (KING_ATTACKS[sq] & this.pieces[Piece.code(color, Piece.KING)])
+                | (KNIGHT_ATTACKS[sq] & this.pieces[Piece.code(color, Piece.KNIGHT)])
+                | (PAWN_ATTACKS[color ^ 1][sq] & this.pieces[Piece.code(color, Piece.PAWN)])
+                | (rookAttacks(sq, occupied) & (this.pieces[Piece.code(color, Piece.ROOK)] | queens))
+                | (bishopAttacks(sq, occupied) & (this.pieces[Piece.code(color, Piece.BISHOP)] | queens));
+        return attackers & occupied;
+    }
+
+
+    /**
+     * @return the change in the mover's positional score a move makes, ignoring material.
+     */
+    public int positionalGain(int move) {
+
+        int piece = Move.piece(move);
+        int placed = Move.isPromotion(move) ? Piece.code(Piece.color(piece), Piece.QUEEN) : piece;
+        return POSITION[placed][Move.to(move)] - POSITION[piece][Move.from(move)];
     }
 
 
     /**
-     * Scans the lists of white and black pieces to find the
-     * piece that matches the given rank and file.
-     * @return Reference to a piece object.
+     * @return the squares a rook on sq attacks, up to and including the first blockers.
      */
-    public Piece identifyPiece(char color, int rank, int file) {
+    private static long rookAttacks(int sq, long occupied) {
+        return rayAttacks(0, sq, occupied) | rayAttacks(1, sq, occupied)
+                | rayAttacks(2, sq, occupied) | rayAttacks(3, sq, occupied);
+    }
+
+
+    /**
+     * @return the squares a bishop on sq attacks diagonally, up to and including the first blockers.
+     */
+    private static long bishopAttacks(int sq, long occupied) {
+        return rayAttacks(4, sq, occupied) | rayAttacks(5, sq, occupied)
+                | rayAttacks(6, sq, occupied) | rayAttacks(7, sq, occupied);
+    }
 
-        List<Piece> pieceList = color == 'W' ? whitePieces : blackPieces;
 
-        for (Piece p : pieceList) {
-            if(!p.captured && rank == p.rank && file == p.file)
-                return p;
+    /**
+     * Cuts a ray off behind the first piece that blocks it.
+     * @param dir The direction index of the ray.
+     * @param sq The square the ray starts from.
+     * @param occupied All the pieces on the board.
+     * @return The squares reachable along the ray.
+     */
+    private static long rayAttacks(int dir, int sq, long occupied) {
+
+        long ray = RAYS[dir][sq];
+        long blockers = ray & occupied;
+
+        if(blockers != 0) {
+            int first = RAY_FORWARD[dir] ? Long.numberOfTrailingZeros(blockers)
+                                         : 63 - Long.numberOfLeadingZeros(blockers);
+            ray ^= RAYS[dir][first];
+        }
+        return ray;
+    }
+
+
+    /**
+     * @return the bitboard of all squares one step away from rank and file.
+     */
+    private static long steps(int rank, int file, int[][] deltas) {
+
+        long bb = 0;
+        for(int[] d : deltas) {
+            int x = file + d[0];
+            int y = rank + d[1];
+            if(x >= 0 && x <= 4 && y >= 0 && y <= 5)
+                bb |= 1L << (y * 5 + x);
         }
-        // the piece must be found or else the program is not working correctly
-        throw new IllegalStateException();
+        return bb;
     }
 
 
     /**
      * Used in tournaments to identify moves that opponent makes.
      * @param opponentMove The move the online opponent has chosen.
-     * @return Opponent's move in the form of a move object.
+     * @return Opponent's move in encoded form.
      */
-    public Move createMove(String opponentMove) {
+    public int createMove(String opponentMove) {
 
-        char c = this.turn;
-        char op = this.turn == 'W' ? 'B': 'W';
+        int[] squares = Move.squares(opponentMove);
+        int from = squares[0];
+        int to = squares[1];
+        int piece = this.squares[from];
+        int captured = this.squares[to];
+        boolean promotion = Piece.type(piece) == Piece.PAWN && (PROMOTION_RANK[Piece.color(piece)] & (1L << to)) != 0;
 
-        Move move = new Move(opponentMove);
-        move.fromPiece = identifyPiece(c, move.fromRank, move.fromFile);
-        if(this.board[move.toRank][move.toFile] != '.')
-            move.toPiece = identifyPiece(op, move.toRank, move.toFile);
-        else
-            move.toPiece = o;
-
-        return move;
+        return Move.encode(from, to, piece, captured, promotion);
     }
 
 
@@ -385,126 +784,120 @@ public class State {
      * an advantage for the side on move, and a negative value a disadvantage.
      * The total points for current player's pieces are subtracted from the
      * total of the opponent's pieces. Also makes heuristic guesses as to
-     * which positions are better for pieces on the board.
+     * which positions are better for pieces on the board. The totals are
+     * kept up to date by movePiece and undoMove, so this is O(1).
      * @return score of evaluated state.
      */
     public int evaluate() {
 
+        int black = this.material[Piece.BLACK] + this.positional[Piece.BLACK];
+        int white = this.material[Piece.WHITE] + this.positional[Piece.WHITE];
+        int score = turn == 'W' ? white-black : black-white;
+
+        if(CHECK_EVAL && score != evaluateFull())
+            throw new IllegalStateException("incremental evaluation " + score + " != " + evaluateFull());
+
+        return score;
+    }
+
+
+    /**
+     * Evaluate the state from scratch by visiting every piece on the board.
+     * Slow, only used to verify the incremental evaluation.
+     * @return score of evaluated state for the side on move.
+     */
+    public int evaluateFull() {
+
         int black = 0;
         int white = 0;
 
-        for (Piece p : this.blackPieces) {
-
-            if(!p.captured) {
-
-                if(p.rank != 0 && p.rank != 5 && p.file != 0 && p.file != 4)
-                    black += 10;
-
-                switch(p.identity) {
-                    case 'k':
-                        black += 1000;
-                        if(this.k.rank != 0 || this.k.file != 0)   // king has been forced to move
-                            black -= 90;
-                        break;
-                    case 'q':
-                        black += 900;
-                        if(this.q.rank != 0 || this.q.file != 1)
-                            black -= 5;
-                        break;
-                    case 'r':
-                        black += 500;
-                        if(this.r.rank != 0 || this.r.file != 4)
-                            black += 50;
-                        break;
-                    case 'b':
-                        black += 300;
-                        if(this.b.rank != 0 || this.b.file != 2)
-                            black += 50;
-                        break;
-                    case 'n':
-                        black += 300;
-                        if(this.n.rank != 0 || this.n.file != 3)
-                            black += 50;
-                        break;
-                    case 'p':
-                        black += 100;
-                        black += (this.p2.rank - 1) * 50;
-                        break;
-                }
+        for(int code = 0; code < 12; ++code) {
+            long bb = this.pieces[code];
+            int total = 0;
+            while(bb != 0) {
+                total += MATERIAL[Piece.type(code)] + POSITION[code][Long.numberOfTrailingZeros(bb)];
+                bb &= bb - 1;
             }
+            if(Piece.color(code) == Piece.WHITE)
+                white += total;
+            else
+                black += total;
         }
+        return turn == 'W' ? white-black : black-white;
+    }
 
-        for (Piece p : this.whitePieces) {
-
-            if(!p.captured) {
-
-                if(p.rank != 0 && p.rank != 5 && p.file != 0 && p.file != 4)
-                    white += 10;
-
-                switch(p.identity) {
-                    case 'K':
-                        white += 1000;
-                        if(this.K.rank != 5 || this.K.file != 4)   // king has been forced to move
-                            white -= 90;
-                        break;
-                    case 'Q':
-                        white += 900;
-                        if(this.Q.rank != 5 || this.Q.file != 3)
-                            white -= 5;
-                        break;
-                    case 'R':
-                        white += 500;
-                        if(this.R.rank != 5 || this.R.file != 0)
-                            white += 50;
-                        break;
-                    case 'B':
-                        white += 300;
-                        if(this.B.rank != 5 || this.B.file != 2)
-                            white += 50;
-                        break;
-                    case 'N':
-                        white += 300;
-                        if(this.N.rank != 5 || this.N.file != 1)
-                            white += 50;
-                        break;
-                    case 'P':
-                        white += 100;
-                        white += abs(this.P3.rank - 4) * 50;
-                        break;
-                }
-            }
+
+    /**
+     * The positional value of a piece standing on a square.
+     * Pieces off the edges get a small bonus, kings and queens are
+     * penalized for leaving home, minor pieces and rooks are rewarded
+     * for developing and pawns for advancing.
+     * @return positional score of the piece on that square.
+     */
+    private static int positionValue(int code, int rank, int file) {
+
+        boolean white = Piece.color(code) == Piece.WHITE;
+        int home = white ? 5 : 0;     // back rank of the piece's color
+        int value = 0;
+
+        if(rank != 0 && rank != 5 && file != 0 && file != 4)
+            value += 10;
+
+        switch(Piece.type(code)) {
+            case Piece.KING:
+                if(rank != home || file != (white ? 4 : 0))   // king has been forced to move
+                    value -= 90;
+                break;
+            case Piece.QUEEN:
+                if(rank != home || file != (white ? 3 : 1))
+                    value -= 5;
+                break;
+            case Piece.ROOK:
+                if(rank != home || file != (white ? 0 : 4))
+                    value += 50;
+                break;
+            case Piece.BISHOP:
+                if(rank != home || file != 2)
+                    value += 50;
+                break;
+            case Piece.KNIGHT:
+                if(rank != home || file != (white ? 1 : 3))
+                    value += 50;
+                break;
+            case Piece.PAWN:
+                value += (white ? 4 - rank : rank - 1) * 50;
+                break;
         }
-        return turn == 'W' ? white-black : black-white;
+        return value;
     }
 
 
     /**
      * Sorts a player's moves by score in descending order.
-     * @param moves Randomly shuffled move list.
-     * @return A list of the best sorted moves for a player.
+     * @param moves Randomly shuffled moves, sorted in place.
+     * @param count The number of moves.
      */
-    public List<Move> bestMoves(List<Move> moves) {
+    public void bestMoves(int[] moves, int count) {
 
-        List<Move> sorted = new ArrayList<Move>();
-
-        for (Move move : moves) {
-            movePiece(move);
-            move.score = -evaluate();       // negate opponent's best scores
-            undoMove(move);
+        for (int i = 0; i < count; ++i) {
+            movePiece(moves[i]);
+            scores[i] = -evaluate();       // negate opponent's best scores
+            undoMove(moves[i]);
         }
 
-        // Adds moves to the sorted moves list in descending order
-        while(!moves.isEmpty()) {
-            Move best = moves.get(0);
-            for (Move move : moves) {
-                if(move.score > best.score)
-                    best = move;
+        // Insertion sort keeps equal moves in their shuffled order
+        for (int i = 1; i < count; ++i) {
+            int move = moves[i];
+            int score = scores[i];
+            int j = i - 1;
+            while(j >= 0 && scores[j] < score) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                --j;
             }
-            sorted.add(best);
-            moves.remove(best);
+            moves[j + 1] = move;
+            scores[j + 1] = score;
         }
-
-        return sorted;
     }
 
 
@@ -517,25 +910,37 @@ public class State {
      */
     public char checkFinalState() {
 
-        if(this.k.captured)
+        if(this.pieces[Piece.code(Piece.BLACK, Piece.KING)] == 0)
             return 'W';
-        if(this.K.captured)
+        if(this.pieces[Piece.code(Piece.WHITE, Piece.KING)] == 0)
             return 'B';
 
-        if(moveCount == 40)    // the game is a draw
+        if(moveCount >= DRAW_MOVE)    // the game is a draw
             return '=';
         return 'o';            // game isn't over yet
     }
 
 
+    /**
+     * @return the number of plies left before the game is drawn.
+     */
+    public int pliesLeft() {
+        return DRAW_MOVE - moveCount;
+    }
+
+
     /**
      * Print a state of the board. Mostly for debugging.
      */
     void printBoard() {
 
         System.out.println(String.format("%d %s", moveCount, turn));
-        for(int i = 0; i < 6; ++i)
-            System.out.println(board[i]);
+        for(int i = 0; i < 6; ++i) {
+            StringBuilder rank = new StringBuilder();
+            for(int j = 0; j < 5; ++j)
+                rank.append(Piece.symbol(squares[i * 5 + j]));
+            System.out.println(rank);
+        }
         System.out.println();
     }
 }
@@ -1,26 +1,101 @@
+import java.util.Arrays;
+
+
 public class TTable {
 
-    private final int size = 524288;                          // size of the ttable should be power of 2
-    private TTableEntry[] entries = new TTableEntry[size];    // array of table entries
+    // megabytes used by the table unless set with -Dminichess.hashMB
+    public static final int DEFAULT_MEGABYTES = Integer.getInteger("minichess.hashMB", 64);
+
+    private static final int BUCKET = 4;       // entries per bucket, 4 x 16 bytes fill a 64 byte cache line
+    private static final long MAX_BUCKETS = 1L << 27;    // keeps the array length within an int
+
+    // Each entry is two longs: the hash XOR the data, then the data. A reader
+    // accepts an entry only if the two XOR back to its hash, so threads can
+    // share the table without locks and a torn write just looks like a miss.
+    private final long[] table;
+    private final long mask;                   // bucket index mask, bucket count is a power of 2
+    private int age;                           // bumped once per search to age out old entries
+
+    public TTable(int megabytes) {
+
+        long buckets = Long.highestOneBit(Math.max(1, (long) megabytes * 1024 * 1024 / (BUCKET * 16)));
+        buckets = Math.min(buckets, MAX_BUCKETS);
+        this.table = new long[(int) (buckets * BUCKET * 2)];
+        this.mask = buckets - 1;
+    }
+
+
+    /**
+     * Starts a new search, so entries from earlier searches are replaced first.
+     */
+    public void newSearch() {
+        this.age = (this.age + 1) & TTableEntry.MAX_AGE;
+    }
 
-    public TTable() {
 
-        // initialize each entry
-        for(int i = 0; i < size; ++i)
-            entries[i] = new TTableEntry();
+    public int age() {
+        return this.age;
     }
 
 
-    public TTableEntry lookup(long hash) {
-        int index = (int)(hash & 524287);     // use first 20 bits for index
-        if(entries[index].valid)              // return a value only if the entry is valid
-            return entries[index];
-        return null;
+    /**
+     * Look up the entry of a state.
+     * @param hash The Zobrist hash of the state.
+     * @return the packed entry data, or 0 if the state is not in the table.
+     */
+    public long lookup(long hash) {
+
+        int index = (int) (hash & mask) * BUCKET * 2;
+
+        for(int i = index; i < index + BUCKET * 2; i += 2) {
+            long data = table[i + 1];
+            if((table[i] ^ data) == hash && data != 0)
+                return data;
+        }
+        return 0;
+    }
+
+
+    /**
+     * Store an entry. Replaces the entry of the same state if there is one,
+     * otherwise the entry in the bucket with the least depth, counting
+     * entries from older searches as shallower.
+     * @param horizonBound The score depends on a tablebase result cut off by the draw.
+     */
+    public void store(long hash, int move, int score, int depth, int bound, int horizon,
+                      boolean horizonBound) {
+
+        int index = (int) (hash & mask) * BUCKET * 2;
+        int replace = index;
+        int worst = Integer.MAX_VALUE;
+
+        for(int i = index; i < index + BUCKET * 2; i += 2) {
+            long data = table[i + 1];
+            if(data == 0 || (table[i] ^ data) == hash) {
+                if(move == Move.NONE && data != 0)
+                    move = TTableEntry.move(data);     // keep the best move we already knew
+                replace = i;
+                break;
+            }
+            int stale = (age - TTableEntry.age(data)) & TTableEntry.MAX_AGE;
+            int worth = TTableEntry.depth(data) - 8 * stale;
+            if(worth < worst) {
+                worst = worth;
+                replace = i;
+            }
+        }
+
+        long data = TTableEntry.pack(move, score, depth, bound, age, horizon, horizonBound);
+        table[replace] = hash ^ data;
+        table[replace + 1] = data;
     }
 
 
-    public void store(TTableEntry t) {
-        int index = (int)(t.hash & 524287);   // use first 20 bits for index
-        entries[index] = t;                   // place in the array
+    /**
+     * Empty the table.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        this.age = 0;
     }
 }
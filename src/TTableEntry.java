@@ -1,22 +1,80 @@
 public class TTableEntry {
 
-    public long hash;
-    public int depth;
-    public int alpha;
-    public int beta;
-    public int value;
-    public boolean valid;
-
-    public TTableEntry() {
-        this.valid = false;
-    }
-
-    public TTableEntry(long hash, int d, int a, int b, int v) {
-        this.hash = hash;
-        this.depth = d;
-        this.alpha = a;
-        this.beta = b;
-        this.value = v;
-        this.valid = true;
+    // A table entry is packed into one long so the table never allocates:
+    //   bits  0-18  best move (Move.NONE if unknown)
+    //   bits 19-38  score, 20-bit two's complement
+    //   bits 39-45  search depth
+    //   bits 46-47  bound type, never 0 for a stored entry
+    //   bits 48-53  search age when stored
+    //   bits 54-60  plies left before the move-40 draw when stored
+    //   bit  61     set if the score depends on a tablebase result cut off by the draw
+    public static final int UPPER = 1;    // score is at most the stored value
+    public static final int LOWER = 2;    // score is at least the stored value
+    public static final int EXACT = 3;    // score is exact
+
+    public static final int MAX_SCORE = (1 << 19) - 1;    // largest score that fits in 20 bits
+    public static final int MAX_AGE = 63;
+
+
+    public static long pack(int move, int score, int depth, int bound, int age, int horizon,
+                            boolean horizonBound) {
+
+        score = Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+
+        return (move & 0x7FFFFL)
+                | ((score & 0xFFFFFL) << 19)
+                | ((long) (depth & 127) << 39)
+                | ((long) bound << 46)
+                | ((long) (age & MAX_AGE) << 48)
+                | ((long) (horizon & 127) << 54)
+                | (horizonBound ? 1L << 61 : 0);
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0x7FFFF);
+    }
+
+    public static int score(long data) {
+        return (int) (data << 25 >> 44);    // sign extend bits 19-38
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 39) & 127;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> 46) & 3;
+    }
+
+    public static int age(long data) {
+        return (int) (data >>> 48) & MAX_AGE;
+    }
+
+    public static int horizon(long data) {
+        return (int) (data >>> 54) & 127;
+    }
+
+    public static boolean horizonBound(long data) {
+        return (data & 1L << 61) != 0;
+    }
+
+
+    /**
+     * The hash does not include the move number, but the move-40 draw makes
+     * the score depend on it. An entry is only reused at the same horizon,
+     * or when neither its search nor the new one reaches the draw. A king
+     * capture score counts the move number it comes at, and a tablebase
+     * win or loss is a draw once it takes more plies than are left, even
+     * far past the search depth. Entries with either are only ever reused
+     * at the same horizon.
+     * @return true if the entry is deep enough and valid at this horizon.
+     */
+    public static boolean usable(long data, int depth, int horizon) {
+
+        int d = depth(data);
+        int h = horizon(data);
+        if (horizonBound(data) || Math.abs(score(data)) >= Negamax.MIN_WIN)
+            return d >= depth && h == horizon;
+        return d >= depth && (h == horizon || (d < h && depth < horizon));
     }
 }
@@ -0,0 +1,349 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+
+/**
+ * Endgame tablebases: the exact result of every position with a few pieces
+ * left, built by TablebaseGenerator. There is one table for each set of
+ * pieces, and one byte in it for each placement of those pieces and side
+ * on move. The byte is 0 for a draw, otherwise the number of plies to the
+ * king capture plus one. The side on move wins if the distance is odd and
+ * loses if it is even: 1 is a king capture now, 0 a side with no moves.
+ * The tables ignore the move-40 draw, so the search compares the distance
+ * with the plies left. A set and its color-swapped twin share one table,
+ * looked up with the board turned around. Tables are memory-mapped, so
+ * loading them at startup costs nothing until they are probed.
+ */
+public class Tablebase {
+
+    public static final int DEFAULT_PIECES = 4;      // five pieces take about 50MB a table
+    public static final int MAX_PIECES = 5;          // the most pieces an index fits
+    public static final String DEFAULT_DIRECTORY = System.getProperty("minichess.tablebases", "tablebases");
+    public static final String SUFFIX = ".tb";
+
+    public static final int NOT_FOUND = -1;          // probe result when no table covers the position
+    public static final int DRAW = 0;
+
+    // Tables by material signature, open addressing, so probing never allocates
+    private static final int SLOTS = 512;
+    private final int[] signatures = new int[SLOTS];
+    private final Material[] materials = new Material[SLOTS];
+    private final ByteBuffer[] tables = new ByteBuffer[SLOTS];
+    private int count;
+    private int maxPieces;                           // pieces of the largest table
+
+
+    /**
+     * A set of pieces, kings included, and the order their squares take in
+     * the index: white pieces by type, then black pieces by type.
+     */
+    static class Material {
+
+        final int[] codes;
+        final String name;           // like "KQkp", also the file name
+        final int signature;
+        final int size;              // entries in the table: two sides on move for each placement
+
+        Material(int[] codes) {
+
+            this.codes = codes.clone();
+            StringBuilder name = new StringBuilder();
+            for (int code : this.codes)
+                name.append(Piece.symbol(code));
+            this.name = name.toString();
+
+            int signature = 0;
+            int size = 2;
+            for (int code : this.codes) {
+                if (Piece.type(code) != Piece.KING)
+                    signature += 1 << shift(code);
+                size *= 30;
+            }
+            this.signature = signature;
+            this.size = size;
+        }
+
+
+        /**
+         * @return the material of a table name like "KQkp".
+         */
+        static Material parse(String name) {
+
+            int[] codes = new int[name.length()];
+            int n = 0;
+            for (int color = Piece.WHITE; color >= Piece.BLACK; --color) {
+                for (int type = Piece.KING; type <= Piece.PAWN; ++type) {
+                    for (int i = 0; i < name.length(); ++i) {
+                        if (Piece.code(name.charAt(i)) == Piece.code(color, type))
+                            codes[n++] = Piece.code(color, type);
+                    }
+                }
+            }
+            if (n != name.length())
+                throw new IllegalStateException("not a table name: " + name);
+            return new Material(codes);
+        }
+
+
+        /**
+         * @return the number of pieces, kings included.
+         */
+        int pieces() {
+            return codes.length;
+        }
+
+
+        /**
+         * @return the number of pawns of both colors.
+         */
+        int pawns() {
+            int pawns = 0;
+            for (int code : codes) {
+                if (Piece.type(code) == Piece.PAWN)
+                    ++pawns;
+            }
+            return pawns;
+        }
+
+
+        /**
+         * The index of a state with this material: the square of each piece
+         * in base 30, times two, plus one if white is on move. Pieces of the
+         * same kind are taken in square order, so every position has one index.
+         * @param s The state.
+         * @param flip Look the state up with the colors swapped and the board turned around.
+         * @return The index into the table.
+         */
+        int index(State s, boolean flip) {
+
+            int index = (s.turn == 'W') != flip ? 1 : 0;
+            int scale = 2;
+            long bb = 0;
+
+            for (int i = 0; i < codes.length; ++i) {
+                if (i == 0 || codes[i] != codes[i - 1])
+                    bb = flip ? flipRanks(s.pieces(swapColor(codes[i]))) : s.pieces(codes[i]);
+                index += Long.numberOfTrailingZeros(bb) * scale;
+                bb &= bb - 1;
+                scale *= 30;
+            }
+            return index;
+        }
+
+
+        /**
+         * The state at an index, or null if there is none: two pieces on one
+         * square, a pawn on the first or last rank, or pieces of the same
+         * kind out of square order.
+         * @param index The index into the table.
+         * @return A new state, or null.
+         */
+        State state(int index) {
+
+            char[][] board = new char[6][5];
+            for (char[] rank : board)
+                Arrays.fill(rank, '.');
+
+            int placement = index >>> 1;
+            int last = -1;
+            for (int i = 0; i < codes.length; ++i) {
+                int sq = placement % 30;
+                placement /= 30;
+                int rank = sq / 5;
+
+                if (board[rank][sq % 5] != '.')
+                    return null;
+                if (Piece.type(codes[i]) == Piece.PAWN && (rank == 0 || rank == 5))
+                    return null;
+                if (i > 0 && codes[i] == codes[i - 1] && sq < last)
+                    return null;
+
+                board[rank][sq % 5] = Piece.symbol(codes[i]);
+                last = sq;
+            }
+            return new State((index & 1) != 0 ? 'W' : 'B', board);
+        }
+    }
+
+
+    /**
+     * Load every table in a directory. A missing directory gives no tables.
+     * @param directory The directory with the .tb files.
+     * @return The tables.
+     */
+    public static Tablebase load(String directory) throws IOException {
+
+        Tablebase tablebase = new Tablebase();
+        File[] files = new File(directory).listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null)
+            return tablebase;
+
+        for (File file : files) {
+            String name = file.getName();
+            tablebase.add(Material.parse(name.substring(0, name.length() - SUFFIX.length())), map(file));
+        }
+        return tablebase;
+    }
+
+
+    /**
+     * Map a table file into memory, read only.
+     */
+    static ByteBuffer map(File file) throws IOException {
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+
+    /**
+     * Add the table of a set of pieces.
+     * @param material The pieces.
+     * @param table The entry of every index.
+     */
+    void add(Material material, ByteBuffer table) {
+
+        if (table.capacity() != material.size)
+            throw new IllegalStateException("table " + material.name + " has " + table.capacity()
+                    + " entries, not " + material.size);
+        if (count >= SLOTS / 2)
+            throw new IllegalStateException("too many tables");
+
+        int slot = material.signature & (SLOTS - 1);
+        while (materials[slot] != null && signatures[slot] != material.signature)
+            slot = (slot + 1) & (SLOTS - 1);
+        if (materials[slot] == null)
+            ++count;
+
+        signatures[slot] = material.signature;
+        materials[slot] = material;
+        tables[slot] = table;
+        maxPieces = Math.max(maxPieces, material.pieces());
+    }
+
+
+    /**
+     * @return the number of pieces, kings included, of the largest table.
+     */
+    public int maxPieces() {
+        return maxPieces;
+    }
+
+
+    /**
+     * @return the number of tables.
+     */
+    public int size() {
+        return count;
+    }
+
+
+    /**
+     * Look up a state. Both kings must be on the board.
+     * @param s The state.
+     * @return The table entry, or NOT_FOUND if no table has its pieces.
+     */
+    public int probe(State s) {
+
+        if (s.pieceCount() > maxPieces)
+            return NOT_FOUND;
+
+        int signature = signature(s);
+        boolean flip = false;
+        int slot = find(signature);
+        if (slot < 0) {
+            flip = true;
+            slot = find(flipSignature(signature));
+            if (slot < 0)
+                return NOT_FOUND;
+        }
+        return tables[slot].get(materials[slot].index(s, flip)) & 0xFF;
+    }
+
+
+    private int find(int signature) {
+
+        int slot = signature & (SLOTS - 1);
+        while (materials[slot] != null) {
+            if (signatures[slot] == signature)
+                return slot;
+            slot = (slot + 1) & (SLOTS - 1);
+        }
+        return -1;
+    }
+
+
+    /**
+     * @return true if the entry, not a draw, is a win for the side on move.
+     */
+    public static boolean isWin(int entry) {
+        return (entry & 1) == 0;     // odd distances are stored even
+    }
+
+
+    /**
+     * @return the plies to the king capture of an entry that is not a draw.
+     */
+    public static int distance(int entry) {
+        return entry - 1;
+    }
+
+
+    /**
+     * @return the entry of a win or loss in a number of plies.
+     */
+    static int entry(int distance) {
+        if (distance > 254)
+            throw new IllegalStateException("distance " + distance + " does not fit a table entry");
+        return distance + 1;
+    }
+
+
+    /**
+     * The count of every piece but the kings, three bits for each piece code.
+     */
+    private static int signature(State s) {
+
+        int signature = 0;
+        for (int code = 0; code < 12; ++code) {
+            if (Piece.type(code) != Piece.KING)
+                signature += Long.bitCount(s.pieces(code)) << shift(code);
+        }
+        return signature;
+    }
+
+
+    private static int shift(int code) {
+        return 3 * (Piece.color(code) * 5 + Piece.type(code) - 1);
+    }
+
+
+    /**
+     * @return the signature with the colors swapped.
+     */
+    private static int flipSignature(int signature) {
+        return (signature >>> 15) | ((signature & 0x7FFF) << 15);
+    }
+
+
+    private static int swapColor(int code) {
+        return Piece.code(Piece.color(code) ^ 1, Piece.type(code));
+    }
+
+
+    /**
+     * @return the bitboard turned around, first rank for last.
+     */
+    private static long flipRanks(long bb) {
+
+        long flipped = 0;
+        for (int rank = 0; rank < 6; ++rank)
+            flipped |= ((bb >>> (rank * 5)) & 31) << ((5 - rank) * 5);
+        return flipped;
+    }
+}
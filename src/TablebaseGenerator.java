@@ -0,0 +1,335 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+
+/**
+ * Builds the endgame tablebases by retrograde analysis. Every set of
+ * pieces up to a size gets a table, smaller sets and sets with fewer
+ * pawns first, so the captures and promotions that leave a set can be
+ * looked up in a table that is already done. Within a set, the positions
+ * decided at the start are the ones where the king can be taken, where
+ * the side on move has no moves, or where leaving the set decides them.
+ * From there, one distance at a time, un-moves from each position decided
+ * at that distance reach the positions before it: a position with a move
+ * to a loss is a win, and one whose moves all lead to wins is a loss.
+ * Every distance is one pass over the table, split into chunks that the
+ * threads of a fork-join pool take in turn.
+ */
+public class TablebaseGenerator {
+
+    private static final int CHUNK = 4096;      // indexes per task of a pass
+
+    private final ForkJoinPool pool;
+    private final Tablebase tablebase = new Tablebase();    // the tables done so far
+
+
+    /**
+     * Work done for one index of a table, with a move list of its own.
+     */
+    private interface Pass {
+        void visit(int index, int[] moves);
+    }
+
+
+    /**
+     * @param threads The number of threads to build each table with.
+     */
+    public TablebaseGenerator(int threads) {
+        this.pool = new ForkJoinPool(threads);
+    }
+
+
+    /**
+     * Build and write the table of every set of pieces up to a size, and
+     * print how each came out.
+     * @param maxPieces The most pieces, kings included.
+     * @param directory The directory to write the .tb files to.
+     */
+    public void generate(int maxPieces, String directory) throws IOException {
+
+        if (maxPieces < 2 || maxPieces > Tablebase.MAX_PIECES)
+            throw new IllegalArgumentException("tables hold 2 to " + Tablebase.MAX_PIECES + " pieces, not " + maxPieces);
+
+        File dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("cannot create " + directory);
+
+        try {
+            for (Tablebase.Material material : materials(maxPieces)) {
+                long start = System.nanoTime();
+                byte[] table = build(material);
+
+                File file = new File(dir, material.name + Tablebase.SUFFIX);
+                Files.write(file.toPath(), table);
+                tablebase.add(material, Tablebase.map(file));
+
+                report(material, table, System.nanoTime() - start);
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Every set of pieces with both kings and up to maxPieces pieces in all,
+     * one of each color-swapped pair, in the order they must be built.
+     */
+    static List<Tablebase.Material> materials(int maxPieces) {
+
+        List<Tablebase.Material> materials = new ArrayList<Tablebase.Material>();
+        addMaterials(materials, new int[maxPieces - 2], 0, 0);
+        materials.sort(Comparator.comparingInt(Tablebase.Material::pieces)
+                .thenComparingInt(Tablebase.Material::pawns));
+        return materials;
+    }
+
+
+    /**
+     * Picks the pieces besides the kings in code order, so every multiset
+     * comes up once, and keeps the sets where white is at least as strong.
+     */
+    private static void addMaterials(List<Tablebase.Material> materials, int[] extra, int n, int first) {
+
+        int[] white = types(extra, n, Piece.WHITE);
+        int[] black = types(extra, n, Piece.BLACK);
+        if (compare(white, black) >= 0) {
+            int[] codes = new int[n + 2];
+            int i = 0;
+            codes[i++] = Piece.code(Piece.WHITE, Piece.KING);
+            for (int type : white)
+                codes[i++] = Piece.code(Piece.WHITE, type);
+            codes[i++] = Piece.code(Piece.BLACK, Piece.KING);
+            for (int type : black)
+                codes[i++] = Piece.code(Piece.BLACK, type);
+            materials.add(new Tablebase.Material(codes));
+        }
+
+        if (n == extra.length)
+            return;
+        for (int code = first; code < 12; ++code) {
+            if (Piece.type(code) != Piece.KING) {
+                extra[n] = code;
+                addMaterials(materials, extra, n + 1, code);
+            }
+        }
+    }
+
+
+    /**
+     * @return the piece types of one color among the first n codes, in order.
+     */
+    private static int[] types(int[] codes, int n, int color) {
+        return IntStream.of(codes).limit(n).filter(code -> Piece.color(code) == color)
+                .map(Piece::type).sorted().toArray();
+    }
+
+
+    /**
+     * Orders the pieces of two sides: more pieces is stronger, then the
+     * stronger piece at the first difference.
+     */
+    private static int compare(int[] a, int[] b) {
+
+        if (a.length != b.length)
+            return a.length - b.length;
+        for (int i = 0; i < a.length; ++i) {
+            if (a[i] != b[i])
+                return b[i] - a[i];     // lower types are stronger
+        }
+        return 0;
+    }
+
+
+    /**
+     * Build the table of one set of pieces.
+     * @param material The pieces.
+     * @return The entry of every index.
+     */
+    byte[] build(Tablebase.Material material) {
+
+        byte[] table = new byte[material.size];
+        byte[] exitLoss = new byte[material.size];                  // longest loss by leaving the set
+        AtomicIntegerArray unknown = new AtomicIntegerArray(material.size);    // moves within the set not yet known to lose
+        AtomicInteger longest = new AtomicInteger();
+
+        // positions decided at once, and what leaving the set gives the rest
+        forEach(material.size, (index, moves) -> {
+
+            State s = material.state(index);
+            if (s == null)
+                return;
+
+            int count = s.moveGen(moves);
+            if (count == 0) {
+                decide(table, index, 0, longest);        // no moves loses
+                return;
+            }
+            if (s.canCaptureKing()) {
+                decide(table, index, 1, longest);
+                return;
+            }
+
+            int inside = 0;
+            int win = Integer.MAX_VALUE;
+            int loss = 0;
+            boolean draw = false;
+
+            for (int i = 0; i < count; ++i) {
+                int move = moves[i];
+                if (!Move.isCapture(move) && !Move.isPromotion(move)) {
+                    ++inside;
+                    continue;
+                }
+
+                s.movePiece(move);
+                int entry = tablebase.probe(s);
+                s.undoMove(move);
+
+                if (entry == Tablebase.NOT_FOUND)
+                    throw new IllegalStateException("no table for " + Move.toString(move) + " from " + material.name);
+                if (entry == Tablebase.DRAW)
+                    draw = true;
+                else if (Tablebase.isWin(entry))
+                    loss = Math.max(loss, Tablebase.distance(entry) + 1);
+                else
+                    win = Math.min(win, Tablebase.distance(entry) + 1);
+            }
+
+            // a move out to a draw means the position can never be lost
+            unknown.set(index, inside + (draw ? 1 : 0));
+            exitLoss[index] = (byte) loss;
+
+            if (win != Integer.MAX_VALUE)
+                decide(table, index, win, longest);      // unless a move within the set wins sooner
+            else if (inside == 0 && !draw)
+                decide(table, index, loss, longest);
+        });
+
+        // one distance at a time, back from the positions decided at it
+        for (int d = 0; d <= longest.get(); ++d) {
+            final int distance = d;
+            final int current = Tablebase.entry(d);
+
+            forEach(material.size, (index, moves) -> {
+
+                if ((table[index] & 0xFF) != current)
+                    return;
+
+                State s = material.state(index);
+                int count = s.unmoveGen(moves, Piece.EMPTY);
+
+                for (int i = 0; i < count; ++i) {
+                    int move = moves[i];
+                    int from = Move.from(move);
+                    if (Move.isPromotion(move))
+                        continue;     // before it, a pawn was on the board, so another table
+                    if (Piece.type(Move.piece(move)) == Piece.PAWN && (from < 5 || from >= 25))
+                        continue;     // pawns are never on the first or last rank
+
+                    s.undoMove(move);
+                    int before = material.index(s, false);
+                    s.movePiece(move);
+
+                    if (distance % 2 == 0) {
+                        // the move before wins, unless something already wins sooner
+                        int entry = table[before] & 0xFF;
+                        if (entry == Tablebase.DRAW || (Tablebase.isWin(entry) && Tablebase.distance(entry) > distance + 1))
+                            decide(table, before, distance + 1, longest);
+                    }
+                    else if (unknown.decrementAndGet(before) == 0) {
+                        // every move before leads to a win for the other side
+                        if (table[before] == Tablebase.DRAW)
+                            decide(table, before, Math.max(distance + 1, exitLoss[before] & 0xFF), longest);
+                    }
+                }
+            });
+        }
+        return table;
+    }
+
+
+    /**
+     * Set the entry of an index to a win or loss in a number of plies.
+     */
+    private static void decide(byte[] table, int index, int distance, AtomicInteger longest) {
+        table[index] = (byte) Tablebase.entry(distance);
+        longest.accumulateAndGet(distance, Math::max);
+    }
+
+
+    /**
+     * Visit every index of a table on the pool's threads, a chunk at a time.
+     */
+    private void forEach(int size, Pass pass) {
+
+        int chunks = (size + CHUNK - 1) / CHUNK;
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int[] moves = new int[State.MAX_MOVES];
+            int end = Math.min(size, (chunk + 1) * CHUNK);
+            for (int index = chunk * CHUNK; index < end; ++index)
+                pass.visit(index, moves);
+        })).join();
+    }
+
+
+    /**
+     * Print the wins, losses and draws of a table and the longest win.
+     */
+    private static void report(Tablebase.Material material, byte[] table, long nanos) {
+
+        long positions = 0;
+        long wins = 0;
+        long losses = 0;
+        int longest = 0;
+
+        for (int index = 0; index < table.length; ++index) {
+            if (material.state(index) == null)
+                continue;
+            ++positions;
+            int entry = table[index] & 0xFF;
+            if (entry == Tablebase.DRAW)
+                continue;
+            if (Tablebase.isWin(entry))
+                ++wins;
+            else
+                ++losses;
+            longest = Math.max(longest, Tablebase.distance(entry));
+        }
+
+        System.out.println(String.format("%-6s positions %,11d  wins %,11d  losses %,11d  draws %,11d  longest %3d  time %,7d ms",
+                material.name, positions, wins, losses, positions - wins - losses, longest, nanos / 1000000));
+    }
+
+
+    /**
+     * Build the tables from the command line.
+     * Usage: tablebase [pieces] [-dir directory] [-threads N]
+     */
+    public static void main(String[] args) throws IOException {
+
+        int pieces = Tablebase.DEFAULT_PIECES;
+        String directory = Tablebase.DEFAULT_DIRECTORY;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("-dir"))
+                directory = args[++i];
+            else if (args[i].equals("-threads"))
+                threads = Integer.parseInt(args[++i]);
+            else
+                pieces = Integer.parseInt(args[i]);
+        }
+
+        new TablebaseGenerator(threads).generate(pieces, directory);
+    }
+}
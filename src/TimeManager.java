@@ -0,0 +1,187 @@
+/**
+ * Decides how long the engine thinks about a move. With an IMCS clock,
+ * the time left is shared out over the moves left before the move-40
+ * draw, less a little for sending each move, but never more than half
+ * the clock. A soft limit says when no new iteration should start, and a
+ * hard limit stops the search outright. The time of the next iteration
+ * is predicted from the last one and the effective branching factor,
+ * the ratio of the nodes of the last two iterations, so an iteration
+ * that cannot finish before the hard limit is never started.
+ * A ponder search starts without limits and gets them when the
+ * opponent plays the predicted move, or is stopped when they do not.
+ */
+public class TimeManager {
+
+    public static final long DEFAULT_MOVE_MILLIS = 7900;    // per move when there is no clock
+    private static final long OVERHEAD_MILLIS = 250;        // sending each move and network delay
+    private static final long MIN_MOVE_MILLIS = 50;         // always search at least this long
+    private static final int HARD_FACTOR = 4;               // hard limit as a multiple of the soft one
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    // Set by the game thread while a ponder search reads them, so all volatile
+    private volatile long start;          // System.nanoTime() when the move started
+    private volatile long soft;           // nanos after which no iteration starts
+    private volatile long hard;           // nanos after which the search stops, shared with helpers
+
+    private long iterationStart;          // when the current iteration started
+    private long lastIteration;           // nanos the last completed iteration took
+    private long lastNodes;               // nodes of the last completed iteration
+    private double branching;             // effective branching factor, 0 until two iterations
+
+
+    /**
+     * Start timing a move with a fixed budget.
+     * @param millis The time for the whole move.
+     */
+    public void startFixed(long millis) {
+        startIterations();
+        limit(millis * NANOS_PER_MILLI, millis * NANOS_PER_MILLI);
+    }
+
+
+    /**
+     * Start timing a move from the time left on the game clock.
+     * @param remainingMillis Our time left on the clock.
+     * @param pliesLeft Plies left before the game is drawn, ours and the opponent's.
+     */
+    public void startClock(long remainingMillis, int pliesLeft) {
+        startIterations();
+        limitClock(remainingMillis, pliesLeft);
+    }
+
+
+    /**
+     * Give a running ponder search the limits of a normal move, counted
+     * from now. The iterations it already finished count towards predicting
+     * the next one.
+     * @param remainingMillis Our time left on the clock, or -1 for the fixed budget.
+     * @param pliesLeft Plies left before the game is drawn.
+     */
+    public void ponderHit(long remainingMillis, int pliesLeft) {
+        if (remainingMillis >= 0)
+            limitClock(remainingMillis, pliesLeft);
+        else
+            limit(DEFAULT_MOVE_MILLIS * NANOS_PER_MILLI, DEFAULT_MOVE_MILLIS * NANOS_PER_MILLI);
+    }
+
+
+    /**
+     * Stop the search at once, as if the hard limit had passed.
+     */
+    public void stop() {
+        this.soft = 0;
+        this.hard = -1;
+    }
+
+
+    /**
+     * Share the clock out over our moves left, of the 40 each side plays
+     * before the draw. Neither limit is ever more than half of the time
+     * left after the reserve, even on the last move.
+     */
+    private void limitClock(long remainingMillis, int pliesLeft) {
+
+        long movesLeft = Math.max(1, (pliesLeft + 1) / 2);     // our moves, this one included
+        long reserve = Math.min(OVERHEAD_MILLIS * movesLeft, remainingMillis / 2);
+        long usable = Math.max(0, remainingMillis - reserve);
+        long most = usable / 2;
+
+        long softMillis = Math.min(most, Math.max(MIN_MOVE_MILLIS, usable / movesLeft));
+        long hardMillis = Math.min(most, Math.max(softMillis, softMillis * HARD_FACTOR));
+
+        limit(softMillis * NANOS_PER_MILLI, hardMillis * NANOS_PER_MILLI);
+    }
+
+
+    /**
+     * Start a search that only ends when it reaches its depth.
+     */
+    public void startInfinite() {
+        startIterations();
+        limit(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+
+    private void startIterations() {
+        this.iterationStart = System.nanoTime();
+        this.lastIteration = 0;
+        this.lastNodes = 0;
+        this.branching = 0;
+    }
+
+
+    private void limit(long softNanos, long hardNanos) {
+        this.hard = Long.MAX_VALUE;      // never expired part way through the change
+        this.start = System.nanoTime();
+        this.soft = softNanos;
+        this.hard = hardNanos;
+    }
+
+
+    /**
+     * @return true once the hard limit has passed. The search polls this
+     * every so many nodes rather than at every node.
+     */
+    public boolean expired() {
+        return System.nanoTime() - start > hard;
+    }
+
+
+    /**
+     * @return the soft limit in milliseconds.
+     */
+    long softMillis() {
+        return soft / NANOS_PER_MILLI;
+    }
+
+
+    /**
+     * @return the hard limit in milliseconds.
+     */
+    long hardMillis() {
+        return hard / NANOS_PER_MILLI;
+    }
+
+
+    /**
+     * @param share A share of the soft limit, like 0.5 for half.
+     * @return true once that share of the soft limit has passed.
+     */
+    public boolean spent(double share) {
+        return System.nanoTime() - start > soft * share;
+    }
+
+
+    /**
+     * Record a completed iteration.
+     * @param nodes The nodes the iteration searched.
+     */
+    public void iterationDone(long nodes) {
+
+        long now = System.nanoTime();
+        if (lastNodes > 0)
+            branching = (double) nodes / lastNodes;
+        lastIteration = now - iterationStart;
+        lastNodes = Math.max(1, nodes);
+        iterationStart = now;
+    }
+
+
+    /**
+     * @return true if the next iteration is worth starting: the soft limit
+     * has not passed, and the predicted time of the iteration fits in
+     * what is left before the hard limit.
+     */
+    public boolean canStartIteration() {
+
+        long elapsed = System.nanoTime() - start;
+        if (elapsed > soft)
+            return false;
+        if (branching == 0 || hard == Long.MAX_VALUE)
+            return true;
+
+        double predicted = lastIteration * Math.max(1.0, branching);
+        return elapsed + predicted <= hard;
+    }
+}
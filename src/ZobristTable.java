@@ -3,11 +3,14 @@ import java.util.Random;
 
 public class ZobristTable {
 
-    private long[][] ztable;    // 30 x 13 table
-    private long white;
-    private long black;
+    private static final long SEED = 0x4D696E6963686573L;    // fixed so every run agrees on hash values
 
-    private int[][] squares = new int[][]{
+    // The keys are shared by every state and every search thread
+    private static final long[][] ztable = new long[30][13];   // 30 squares on the board and 13 total piece types
+    private static final long white;
+    private static final long black;
+
+    private static final int[][] squares = new int[][]{
             { 0, 1, 2, 3, 4 },
             { 5, 6, 7, 8, 9 },
             { 10, 11, 12, 13, 14},
@@ -16,7 +19,7 @@ public class ZobristTable {
             { 25, 26, 27, 28, 29}
     };
 
-    private final char[][] startBoard = new char[][] {
+    private static final char[][] startBoard = new char[][] {
         { 'k', 'q', 'b', 'n', 'r'},
         { 'p', 'p', 'p', 'p', 'p'},
         { '.', '.', '.', '.', '.'},
@@ -25,12 +28,9 @@ public class ZobristTable {
         { 'R', 'N', 'B', 'Q', 'K'}
     };
 
+    static {
 
-    public ZobristTable() {
-
-        Random rand = new Random();
-
-        ztable = new long[30][13];   // 30 squares on the board and 13 total piece types
+        Random rand = new Random(SEED);
 
         for(int i = 0; i < 30; ++i) {
             for(int j = 0; j < 13; ++j)
@@ -49,84 +49,75 @@ public class ZobristTable {
      * for the rest of the states based off of this one.
      * @return the hash of the starting board state.
      */
-    public long startHash() {
+    public static long startHash() {
 
         long hash = 0;
 
         for(int i = 0; i < 6; ++i) {
             for(int j = 0; j < 5; ++j) {
-                int column = getColumn(this.startBoard[i][j]);
-                hash ^= this.ztable[squares[i][j]][column];
+                int column = getColumn(startBoard[i][j]);
+                hash ^= ztable[squares[i][j]][column];
             }
         }
-        hash ^= black;    // white moves first
+        hash ^= white;    // white moves first
         return hash;
     }
 
 
-    /*public long hash(Move m, long prevHash) {
-
-        int sourceSquare = this.squares[m.fromRank][m.fromFile];
-        int destSquare = this.squares[m.toRank][m.toFile];
-
-        int sourceCol = getColumn(m.fromPiece.identity);
-        int destCol = getColumn(m.toPiece.identity);
-
-        long prevSource = this.ztable[sourceSquare][sourceCol];
-        long prevDest = this.ztable[destSquare][destCol];
-
-        long newSource = this.ztable[sourceSquare][12];
-        long newDest = this.ztable[destSquare][sourceCol];
-
-        return prevHash ^ newSource ^ prevSource ^ newDest ^ prevDest ^ white ^ black;
-    }*/
-
-
     /**
-     * Computes the Zobrist hash of a board state.
-     * @param m, the move to get to the new state.
+     * Computes the Zobrist hash of a board state. The same call
+     * with the new hash reverts it, so undoing a move uses it too.
+     * @param m, the encoded move to get to the new state.
      * @param prevHash, the hash of the old state.
      * @return the hash of the new state.
      */
-    public long hash(Move m, long prevHash) {
+    public static long hash(int m, long prevHash) {
 
-        int sourceSquare = this.squares[m.fromRank][m.fromFile];
-        int destSquare = this.squares[m.toRank][m.toFile];
+        int sourceSquare = Move.from(m);
+        int destSquare = Move.to(m);
 
-        int sourceCol = getColumn(m.fromPiece.identity);
-        int destCol = getColumn(m.toPiece.identity);
+        int sourceCol = Move.piece(m);      // piece codes match the table columns
+        int destCol = Move.captured(m);
 
-        long prevSource = this.ztable[sourceSquare][sourceCol];
-        long prevDest = this.ztable[destSquare][destCol];
+        long prevSource = ztable[sourceSquare][sourceCol];
+        long prevDest = ztable[destSquare][destCol];
 
-        long newSource = this.ztable[sourceSquare][12];
-        long newDest = this.ztable[destSquare][sourceCol];
+        long newSource = ztable[sourceSquare][12];
+        long newDest = ztable[destSquare][sourceCol];
 
         // change the destination if there is pawn promotion
-        if(m.fromPiece.identity == 'p' && m.toRank == 5)
-            newDest = this.ztable[destSquare][1];
-        else if(m.fromPiece.identity == 'P' && m.toRank == 0)
-            newDest = this.ztable[destSquare][7];
+        if(Move.isPromotion(m))
+            newDest = ztable[destSquare][sourceCol - Piece.PAWN + Piece.QUEEN];
 
         return prevHash ^ newSource ^ prevSource ^ prevDest ^ newDest ^ white ^ black;
     }
 
 
+    /**
+     * Switches the side to move in a hash, for a null move. Its own inverse.
+     * @param prevHash, the hash of the old state.
+     * @return the hash of the same board with the other side to move.
+     */
+    public static long nullMove(long prevHash) {
+        return prevHash ^ white ^ black;
+    }
+
+
     /*
      * Backup hash function that computes the hash using the value
      * of each individual cell. This is much slower than the preferred method.
      */
-    public long hash2(State s) {
+    public static long hash2(State s) {
 
         long hash = 0;
 
         for(int i = 0; i < 6; ++i) {
             for(int j = 0; j < 5; ++j) {
-                int column = getColumn(s.board[i][j]);
-                hash ^= this.ztable[squares[i][j]][column];
+                int column = s.pieceAt(squares[i][j]);    // piece codes match the table columns
+                hash ^= ztable[squares[i][j]][column];
             }
         }
-        hash ^= s.turn;
+        hash ^= s.turn == 'W' ? white : black;
         return hash;
     }
 
@@ -134,7 +125,7 @@ public class ZobristTable {
     /**
      * @return the column index of a type of piece.
      */
-    private int getColumn(char p) throws UnknownError {
+    private static int getColumn(char p) throws UnknownError {
 
         switch (p) {
             case 'k':
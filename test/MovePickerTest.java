@@ -0,0 +1,49 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class MovePickerTest {
+
+    @Test
+    public void movePicker() throws Exception {
+
+        File folder = new File("test/genmoves-tests");
+        int[] moves = new int[State.MAX_MOVES];
+        int[] picked = new int[State.MAX_MOVES];
+
+        // the picker hands out every move moveGen makes exactly once, whatever the hints
+        for (File file : folder.listFiles()) {
+            if (file.isFile() && file.getName().endsWith(".in")) {
+                State s = StateTest.readState(file);
+                int count = s.moveGen(moves);
+                assertEquals(count, s.genCaptures(picked) + s.genQuiets(picked));
+
+                MovePicker picker = new MovePicker();
+                int hint = count > 0 ? moves[count - 1] : Move.NONE;
+                picker.init(s, hint, hint, Move.encode(0, 1, Piece.EMPTY - 1, Piece.EMPTY, false), new int[12][30]);
+
+                int n = 0;
+                int move;
+                while ((move = picker.next()) != Move.NONE) {
+                    assertTrue(file.getName(), s.isPseudoLegal(move));
+                    picked[n++] = move;
+                }
+
+                List<Integer> expected = new ArrayList<Integer>();
+                List<Integer> actual = new ArrayList<Integer>();
+                for (int i = 0; i < count; ++i)
+                    expected.add(moves[i]);
+                for (int i = 0; i < n; ++i)
+                    actual.add(picked[i]);
+                assertEquals(file.getName(), count, n);
+                assertTrue(file.getName(), actual.containsAll(expected));
+            }
+        }
+    }
+}
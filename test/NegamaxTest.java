@@ -0,0 +1,115 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+
+public class NegamaxTest {
+
+    @Test
+    public void analyze() throws Exception {
+
+        // taking the queen is clearly best
+        State s = new State('W', new char[][] {
+                {'k', '.', '.', '.', '.'},
+                {'p', '.', '.', '.', '.'},
+                {'.', '.', 'q', '.', '.'},
+                {'.', 'P', '.', '.', '.'},
+                {'.', '.', '.', 'P', 'P'},
+                {'.', '.', '.', 'R', 'K'}});
+        int depth = 4;
+
+        // k different root moves, best first
+        List<RootMove> lines = new Negamax(1, 16).analyze(s, 3, depth, 0);
+        assertEquals(3, lines.size());
+        for (int i = 0; i < lines.size(); ++i) {
+            RootMove line = lines.get(i);
+            assertEquals(depth, line.depth);
+            assertEquals(line.move, line.pv[0]);
+            assertTrue(line.pv.length <= depth);
+            assertTrue(line.nodes > 0);
+            for (int j = 0; j < i; ++j) {
+                assertTrue(lines.get(j).move != line.move);
+                assertTrue(lines.get(j).score >= line.score);
+            }
+        }
+
+        // the first line is what a normal search to the same depth plays
+        Negamax negamax = new Negamax(1, 16);
+        int best = negamax.searchDepth(s, depth);
+        assertEquals(Move.toString(best), Move.toString(lines.get(0).move));
+        assertEquals("b3-c4", Move.toString(best));
+        assertEquals(negamax.score(), lines.get(0).score);
+    }
+
+
+    @Test
+    public void kingCapture() throws Exception {
+
+        // the queen takes the king at once, and every other move wins later
+        State s = new State(19, 'W', new char[][] {
+                {'.', 'k', '.', '.', '.'},
+                {'.', '.', 'Q', '.', '.'},
+                {'.', '.', '.', '.', '.'},
+                {'.', '.', '.', '.', '.'},
+                {'.', '.', '.', '.', '.'},
+                {'.', '.', '.', '.', 'K'}});
+        Negamax negamax = new Negamax(1, 16);
+        int move = negamax.searchDepth(s, 4);
+        assertEquals("c5-b6", Move.toString(move));
+        assertEquals(Piece.KING, Piece.type(Move.captured(move)));
+        assertEquals(Negamax.captureScore(s, 1), negamax.score());
+
+        // in check, d5 loses the king at once, but it can be kept for another two plies
+        s = new State(20, 'B', new char[][] {
+                {'.', '.', '.', '.', '.'},
+                {'.', '.', 'Q', '.', 'k'},
+                {'.', '.', '.', '.', '.'},
+                {'.', '.', '.', '.', '.'},
+                {'.', '.', '.', '.', '.'},
+                {'.', '.', '.', '.', 'K'}});
+        int[] moves = new int[State.MAX_MOVES];
+        int count = s.moveGen(moves);
+        int quick = 0;
+        for (int i = 0; i < count; ++i) {
+            s.movePiece(moves[i]);
+            if (s.canCaptureKing())
+                ++quick;
+            s.undoMove(moves[i]);
+        }
+        assertTrue(quick > 0);
+
+        negamax = new Negamax(1, 16);
+        move = negamax.searchDepth(s, 6);
+        assertEquals(-Negamax.captureScore(s, 4), negamax.score());
+        s.movePiece(move);
+        assertTrue(Move.toString(move), !s.canCaptureKing());
+    }
+
+
+    @Test
+    public void analyzeDuringGame() throws Exception {
+
+        Negamax negamax = new Negamax(1, 16);
+        State game = new State();
+        State other = State.read("test/genmoves-tests/promote-and-capture.in");
+
+        // analyzing and searching other positions between moves leaves the game where it was
+        for (int ply = 0; ply < 4; ++ply) {
+            String ours = negamax.online(null, 2000);
+            int move = game.createMove(ours);
+            assertTrue(ours, game.isPseudoLegal(move));
+            game.movePiece(move);
+
+            negamax.analyze(other, 2, 3, 0);
+            negamax.searchDepth(other, 3);
+
+            int[] moves = new int[State.MAX_MOVES];
+            game.moveGen(moves);
+            negamax.online(Move.toString(moves[0]));
+            game.movePiece(moves[0]);
+        }
+    }
+}
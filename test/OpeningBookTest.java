@@ -0,0 +1,75 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+
+public class OpeningBookTest {
+
+    @Test
+    public void openingBook() throws Exception {
+
+        State s = new State();
+        int[] moves = new int[State.MAX_MOVES];
+        s.moveGen(moves);
+        int a = moves[0];
+        int b = moves[1];
+        int c = moves[2];
+        File file = File.createTempFile("minichess", ".book");
+        file.deleteOnExit();
+
+        // the heaviest move is played, the better score breaking ties, and never one of weight 0
+        writeBook(file, s.hash, new int[][] { { a, 10, 50 }, { b, 20, 50 }, { c, 900, 0 } });
+        OpeningBook book = OpeningBook.open(file.getPath());
+        assertEquals(3, book.size());
+        assertEquals(b, book.probe(s));
+
+        // a lost game costs b weight, and the book on disk learns it too
+        book.played(s.hash, b, 'W');
+        book.learn('B');
+        assertEquals(a, book.probe(s));
+        assertEquals(a, OpeningBook.open(file.getPath()).probe(s));
+
+        // a draw changes nothing
+        book.played(s.hash, a, 'W');
+        book.learn('=');
+        assertEquals(a, book.probe(s));
+
+        // weights stop at 0, so one win is enough to come back from there
+        writeBook(file, s.hash, new int[][] { { a, 10, 5 }, { b, 0, 7 } });
+        book = OpeningBook.open(file.getPath());
+        book.played(s.hash, a, 'W');
+        book.learn('B');
+        assertEquals(b, book.probe(s));
+        book.played(s.hash, a, 'W');
+        book.learn('W');
+        assertEquals(a, book.probe(s));
+
+        // and at MAX_WEIGHT, where the better score wins the tie
+        writeBook(file, s.hash, new int[][] { { a, 10, OpeningBook.MAX_WEIGHT - 5 }, { b, 20, OpeningBook.MAX_WEIGHT } });
+        book = OpeningBook.open(file.getPath());
+        book.played(s.hash, a, 'B');
+        book.learn('B');
+        assertEquals(b, book.probe(s));
+    }
+
+    /**
+     * Writes a book with entries for one position.
+     * @param entries The move, score and weight of each entry.
+     */
+    private void writeBook(File file, long hash, int[][] entries) throws Exception {
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (int[] entry : entries) {
+                out.writeLong(hash);
+                out.writeInt(entry[0]);
+                out.writeInt(entry[1]);
+                out.writeInt(entry[2]);
+            }
+        }
+    }
+}
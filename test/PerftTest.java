@@ -0,0 +1,22 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class PerftTest {
+
+    @Test
+    public void perft() throws Exception {
+
+        // leaf counts from the start position
+        long[] expected = new long[] { 1, 7, 49, 473, 4627, 54254, 645381 };
+        for (int depth = 0; depth < expected.length; ++depth)
+            assertEquals(expected[depth], new Perft(0).perft(new State(), depth));
+
+        // the hashed and the parallel counts must agree with the plain count
+        State s = State.read("test/genmoves-tests/promote-and-capture.in");
+        long nodes = new Perft(0).perft(s, 6);
+        assertEquals(nodes, new Perft(16).perft(s, 6));
+        assertEquals(nodes, new Perft(16).parallel(s, 6, 4));
+    }
+}
@@ -0,0 +1,62 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+
+public class SolverTest {
+
+    @Test
+    public void solver() throws Exception {
+
+        File folder = new File("test/genmoves-tests");
+
+        // four plies before the draw, the solver agrees with a full minimax
+        for (File file : folder.listFiles()) {
+            if (file.isFile() && file.getName().endsWith(".in")) {
+                State s = StateTest.readState(file, State.DRAW_MOVE - 4);
+                long hash = s.hash;
+
+                TimeManager time = new TimeManager();
+                time.startInfinite();
+                Solver solver = new Solver();
+                int move = solver.solve(s, time, null);
+                assertEquals(hash, s.hash);
+
+                int count = s.moveGen(new int[State.MAX_MOVES]);
+                if (count == 0 || s.checkFinalState() != 'o') {
+                    assertEquals(Move.NONE, move);
+                    continue;
+                }
+
+                assertEquals(file.getName(), minimax(s), solver.result());
+                s.movePiece(move);
+                assertEquals(file.getName(), solver.result(), -minimax(s));
+            }
+        }
+    }
+
+    /**
+     * @return the result for the side on move with every line searched to the end:
+     * Solver.WIN, DRAW or LOSS.
+     */
+    private int minimax(State s) {
+
+        char status = s.checkFinalState();
+        if (status == '=')
+            return Solver.DRAW;
+        if (status != 'o')
+            return Solver.LOSS;
+
+        int[] moves = new int[State.MAX_MOVES];
+        int count = s.moveGen(moves);
+        int best = Solver.LOSS;
+        for (int i = 0; i < count; ++i) {
+            s.movePiece(moves[i]);
+            best = Math.max(best, -minimax(s));
+            s.undoMove(moves[i]);
+        }
+        return best;
+    }
+}
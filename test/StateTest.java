@@ -1,5 +1,8 @@
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -25,46 +28,29 @@ public class StateTest {
             // read .in files before .out files
             if (file.isFile() && file.getName().endsWith(".in")) {
 
-                br = new BufferedReader(new FileReader(file));
+                State s = readState(file);   // create a new state with the required board
                 String line;
 
-                String move = br.readLine();    // read in the player on move
-                char turn = move.charAt(move.length()-1);
-
-                char[][] board = new char[6][5];
-
-                // read in the board
-                for(int j = 0; j < 6; ++j) {
-                    line = br.readLine();
-                    for(int k = 0; k < 5; ++k)
-                        board[j][k] = line.charAt(k);
-                }
-
-                State s = new State(turn, board);   // create a new state with the required board
-
-                List<Move> moves = s.moveGen();    // generate moves for player on move
-                List<String> moveStrings = new ArrayList<String>();   // extract the move strings from Move object
-                for (Move m : moves)
-                    moveStrings.add(m.move);
+                int[] moves = new int[State.MAX_MOVES];
+                int count = s.moveGen(moves);    // generate moves for player on move
+                List<String> moveStrings = new ArrayList<String>();   // build the move strings from the encoded moves
+                for (int m = 0; m < count; ++m)
+                    moveStrings.add(Move.toString(moves[m]));
 
                 // now read in correct answers from the corresponding .out file
-                br = new BufferedReader(new FileReader(listOfFiles[i+1]));
+                String outName = file.getName().replace(".in", ".out");
+                br = new BufferedReader(new FileReader(new File(folder, outName)));
 
-                List<Move> correctMoves = new ArrayList<Move>();
-                List<String> correctStrings = new ArrayList<String>(); // extract the move strings from Move object
+                List<String> correctStrings = new ArrayList<String>();
 
                 while ((line = br.readLine())!= null)
-                    correctMoves.add(new Move(line));
+                    correctStrings.add(line);
                 br.close();
 
-                for (Move m : correctMoves)
-                    correctStrings.add(m.move);
-
                 // check that all our generated moves are exactly like the correct moves
-                if(moveStrings.containsAll(correctStrings) && correctStrings.containsAll(moveStrings))
-                    System.out.println(file + " -> passed");
-                else
-                    System.out.println(file + " -> failed");
+                boolean passed = moveStrings.containsAll(correctStrings) && correctStrings.containsAll(moveStrings);
+                System.out.println(file + (passed ? " -> passed" : " -> failed"));
+                assertTrue(file.getName(), passed);
             }
         }
     }
@@ -72,6 +58,148 @@ public class StateTest {
     @Test
     public void evaluate() throws Exception {
 
+        File folder = new File("test/genmoves-tests");
+
+        // the incremental evaluation must match a full recompute after every move and undo
+        for (File file : folder.listFiles()) {
+            if (file.isFile() && file.getName().endsWith(".in")) {
+                State s = readState(file);
+                checkIncremental(s, 3, new int[3][State.MAX_MOVES]);
+            }
+        }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void hash() throws Exception {
+
+        // keys are shared, so separately built states agree on their hashes
+        State start = new State();
+        assertEquals(ZobristTable.hash2(start), start.hash);
+        assertEquals(new State().hash, start.hash);
+
+        File folder = new File("test/genmoves-tests");
+        for (File file : folder.listFiles()) {
+            if (file.isFile() && file.getName().endsWith(".in"))
+                assertEquals(readState(file).hash, readState(file).hash);
+        }
+    }
+
+    @Test
+    public void see() throws Exception {
+
+        // a queen taking a pawn that a pawn defends loses the queen for the pawn
+        State s = new State('W', new char[][] {
+                {'k', '.', '.', '.', '.'},
+                {'.', 'p', '.', '.', '.'},
+                {'.', '.', 'p', '.', '.'},
+                {'.', '.', 'Q', '.', '.'},
+                {'.', '.', '.', '.', '.'},
+                {'.', '.', '.', '.', 'K'}});
+        assertEquals(100 - 900, s.see(s.createMove("c3-c4")));
+
+        // the bishop's orthogonal step never captures, so it does not defend
+        s = new State('W', new char[][] {
+                {'k', '.', '.', '.', '.'},
+                {'.', '.', 'b', '.', '.'},
+                {'.', '.', 'p', '.', '.'},
+                {'.', '.', 'Q', '.', '.'},
+                {'.', '.', '.', '.', '.'},
+                {'.', '.', '.', '.', 'K'}});
+        assertEquals(100, s.see(s.createMove("c3-c4")));
+
+        // a rook behind the queen joins in after the queen has captured
+        s = new State('W', new char[][] {
+                {'k', '.', '.', '.', '.'},
+                {'.', 'b', '.', '.', '.'},
+                {'.', '.', 'r', '.', '.'},
+                {'.', '.', 'Q', '.', '.'},
+                {'.', '.', 'R', '.', '.'},
+                {'.', '.', '.', '.', 'K'}});
+        assertEquals(500 - 900 + 300, s.see(s.createMove("c3-c4")));
+    }
+
+    @Test
+    public void unmoveGen() throws Exception {
+
+        File folder = new File("test/genmoves-tests");
+        int[] moves = new int[State.MAX_MOVES];
+        int[] unmoves = new int[State.MAX_MOVES];
+
+        // every move can be taken back, and every un-move can be made again
+        for (File file : folder.listFiles()) {
+            if (file.isFile() && file.getName().endsWith(".in")) {
+                State s = readState(file);
+                int count = s.moveGen(moves);
+
+                for (int i = 0; i < count; ++i) {
+                    int move = moves[i];
+                    s.movePiece(move);
+                    long hash = s.hash;
+
+                    int n = s.unmoveGen(unmoves, Move.captured(move));
+                    boolean found = false;
+                    for (int u = 0; u < n; ++u) {
+                        found |= unmoves[u] == move;
+                        s.undoMove(unmoves[u]);
+                        assertTrue(file.getName() + " " + Move.toString(unmoves[u]), s.isPseudoLegal(unmoves[u]));
+                        s.movePiece(unmoves[u]);
+                        assertEquals(hash, s.hash);
+                    }
+                    assertTrue(file.getName() + " " + Move.toString(move), found);
+                    s.undoMove(move);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks every line to the given depth and checks that the incremental
+     * evaluation and hash match a full recompute after every move and undo.
+     */
+    private void checkIncremental(State s, int depth, int[][] moves) {
+
+        assertEquals(s.evaluateFull(), s.evaluate());
+        assertEquals(ZobristTable.hash2(s), s.hash);
+        if (depth == 0 || s.checkFinalState() != 'o')
+            return;
+
+        long hash = s.hash;
+        int count = s.moveGen(moves[depth - 1]);
+        for (int i = 0; i < count; ++i) {
+            s.movePiece(moves[depth - 1][i]);
+            checkIncremental(s, depth - 1, moves);
+            s.undoMove(moves[depth - 1][i]);
+        }
+        assertEquals(s.evaluateFull(), s.evaluate());
+        assertEquals(hash, s.hash);
+    }
+
+    /**
+     * Reads the player on move and the board from a genmoves .in file.
+     */
+    static State readState(File file) throws Exception {
+        return readState(file, 1);
+    }
+
+    /**
+     * Reads a genmoves .in file as a state at the given move number.
+     */
+    static State readState(File file, int moveCount) throws Exception {
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+
+            String move = reader.readLine();    // read in the player on move
+            char turn = move.charAt(move.length()-1);
+
+            char[][] board = new char[6][5];
+
+            // read in the board
+            for(int j = 0; j < 6; ++j) {
+                String line = reader.readLine();
+                for(int k = 0; k < 5; ++k)
+                    board[j][k] = line.charAt(k);
+            }
+            return new State(moveCount, turn, board);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+
+public class TablebaseTest {
+
+    @Test
+    public void tablebase() throws Exception {
+
+        File dir = Files.createTempDirectory("minichess").toFile();
+        try {
+            new TablebaseGenerator(1).generate(3, dir.getPath());
+            Tablebase tablebase = Tablebase.load(dir.getPath());
+            assertEquals(3, tablebase.maxPieces());
+
+            int[] moves = new int[State.MAX_MOVES];
+            int positions = 0;
+
+            for (Tablebase.Material material : TablebaseGenerator.materials(3)) {
+                for (int index = 0; index < material.size; ++index) {
+                    State s = material.state(index);
+                    if (s == null)
+                        continue;
+                    ++positions;
+
+                    // every entry follows from the entries one move on
+                    int entry = tablebase.probe(s);
+                    String at = material.name + " index " + index;
+                    assertEquals(at, forward(tablebase, s, moves), entry);
+
+                    // the color-swapped twin, turned around, looks up the same entry
+                    assertEquals(at, entry, tablebase.probe(flip(s)));
+                }
+            }
+            assertTrue(positions > 0);
+        }
+        finally {
+            for (File file : dir.listFiles())
+                file.delete();
+            dir.delete();
+        }
+    }
+
+
+    /**
+     * @return the entry a state must have given the entries after each of its moves.
+     */
+    private static int forward(Tablebase tablebase, State s, int[] moves) {
+
+        int count = s.moveGen(moves);
+        if (count == 0)
+            return Tablebase.entry(0);
+        if (s.canCaptureKing())
+            return Tablebase.entry(1);
+
+        int win = Integer.MAX_VALUE;
+        int loss = 0;
+        boolean draw = false;
+
+        for (int i = 0; i < count; ++i) {
+            s.movePiece(moves[i]);
+            int entry = tablebase.probe(s);
+            s.undoMove(moves[i]);
+
+            assertTrue(entry != Tablebase.NOT_FOUND);
+            if (entry == Tablebase.DRAW)
+                draw = true;
+            else if (Tablebase.isWin(entry))
+                loss = Math.max(loss, Tablebase.distance(entry) + 1);
+            else
+                win = Math.min(win, Tablebase.distance(entry) + 1);
+        }
+
+        // the fastest win, or else a draw, or else the slowest loss
+        if (win != Integer.MAX_VALUE)
+            return Tablebase.entry(win);
+        return draw ? Tablebase.DRAW : Tablebase.entry(loss);
+    }
+
+
+    /**
+     * @return the state with the colors swapped and the board turned around.
+     */
+    private static State flip(State s) {
+
+        char[][] board = new char[6][5];
+        for (int sq = 0; sq < 30; ++sq)
+            board[5 - sq / 5][sq % 5] = '.';
+
+        for (int code = 0; code < 12; ++code) {
+            char symbol = Piece.symbol(Piece.code(Piece.color(code) ^ 1, Piece.type(code)));
+            for (long bb = s.pieces(code); bb != 0; bb &= bb - 1) {
+                int sq = Long.numberOfTrailingZeros(bb);
+                board[5 - sq / 5][sq % 5] = symbol;
+            }
+        }
+        return new State(s.turn == 'W' ? 'B' : 'W', board);
+    }
+}
@@ -0,0 +1,31 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+
+public class TimeManagerTest {
+
+    @Test
+    public void limitClock() {
+
+        long[] clocks = { 0, 1, 49, 50, 99, 100, 250, 1000, 5000, 20000, 60000, 300000, 600000 };
+        TimeManager time = new TimeManager();
+
+        // neither limit is more than half the clock, and the soft one is never past the hard one
+        for (long clock : clocks) {
+            for (int pliesLeft = 0; pliesLeft <= State.DRAW_MOVE; ++pliesLeft) {
+                time.startClock(clock, pliesLeft);
+                String at = clock + " ms, " + pliesLeft + " plies left";
+                assertTrue(at, time.softMillis() >= 0);
+                assertTrue(at, time.softMillis() <= time.hardMillis());
+                assertTrue(at, 2 * time.hardMillis() <= clock);
+            }
+        }
+
+        // a ponder hit gets the same limits
+        time.startInfinite();
+        time.ponderHit(1000, 1);
+        assertTrue(time.softMillis() <= time.hardMillis());
+        assertTrue(2 * time.hardMillis() <= 1000);
+    }
+}